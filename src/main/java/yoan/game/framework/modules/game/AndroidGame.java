@@ -99,6 +99,34 @@ public abstract class AndroidGame extends Activity implements Game {
 		if(isFinishing()) screen.dispose();
 	}
 	
+	/**
+	 * Active la simulation à pas de temps fixe : screen.update est appelé avec une durée constante,
+	 * autant de fois que nécessaire pour rattraper le temps réel écoulé
+	 * screen.present reçoit toujours le temps réel écoulé, l'état affiché s'interpole avec getInterpolationAlpha
+	 * A appeler après onCreate
+	 * @param step : durée d'un pas de simulation en secondes (1/60f...)
+	 * @param maxSteps : nombre maximum de pas simulés par frame
+	 */
+	public void setFixedTimestep(float step, int maxSteps){
+		renderView.setFixedTimestep(new FixedTimestep(step, maxSteps));
+	}
+	
+	/**
+	 * Revient à la simulation à pas de temps variable, screen.update reçoit le temps réel écoulé
+	 */
+	public void setVariableTimestep(){
+		renderView.setFixedTimestep(null);
+	}
+	
+	/**
+	 * Donne le coefficient d'interpolation du rendu entre les deux derniers états simulés
+	 * A utiliser dans screen.present : état affiché = précédent + (courant - précédent) * alpha
+	 * @return fraction de pas non simulée [0-1[, 1 en pas de temps variable
+	 */
+	public float getInterpolationAlpha(){
+		return renderView.getInterpolationAlpha();
+	}
+	
 	/** 
 	 * Accès au gestionnaire des entrées
 	 * @return Input 
@@ -0,0 +1,84 @@
+package yoan.game.framework.modules.game;
+
+/**
+ * Boucle de simulation à pas de temps fixe
+ * Le temps réel écoulé est accumulé puis consommé par pas de durée fixe, la simulation reste ainsi identique
+ * quelle que soit la fréquence d'affichage ; le reste de l'accumulateur donne le coefficient d'interpolation du rendu
+ * Le temps est compté en nanosecondes pour que le nombre de pas ne dépende pas des erreurs d'arrondi
+ * @author yoan
+ */
+public class FixedTimestep {
+	/** Durée d'un pas de simulation en secondes */
+	final float step;
+	/** Durée d'un pas de simulation en nanosecondes */
+	final long stepNanos;
+	/** Nombre maximum de pas simulés par frame */
+	final int maxSteps;
+	/** Temps écoulé pas encore simulé en nanosecondes */
+	long accumulator;
+	/** Nombre de pas abandonnés car la simulation ne suivait plus */
+	public int droppedSteps;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param step : durée d'un pas de simulation en secondes (1/60f...)
+	 * @param maxSteps : nombre maximum de pas simulés par frame, le temps au delà est abandonné
+	 * pour qu'une frame lente ne provoque pas une spirale de rattrapage
+	 */
+	public FixedTimestep(float step, int maxSteps){
+		if(step <= 0) throw new IllegalArgumentException("Step must be strictly positive");
+		if(maxSteps <= 0) throw new IllegalArgumentException("Max steps must be strictly positive");
+		this.step= step;
+		this.stepNanos= (long) (step * 1000000000.0);
+		this.maxSteps= maxSteps;
+	}
+
+	/**
+	 * Ajoute le temps écoulé depuis la dernière frame
+	 * @param elapsedNanos : temps écoulé en nanosecondes
+	 * @return nombre de pas de simulation à exécuter, chacun d'une durée getStep()
+	 */
+	public int advance(long elapsedNanos){
+		accumulator+= elapsedNanos;
+		long steps= accumulator / stepNanos;
+		if(steps > maxSteps){
+			droppedSteps+= steps - maxSteps;
+			steps= maxSteps;
+		}
+		accumulator-= steps * stepNanos;
+		//le temps abandonné n'est pas rattrapé aux frames suivantes
+		if(accumulator >= stepNanos) accumulator%= stepNanos;
+		return (int) steps;
+	}
+
+	/**
+	 * Donne le coefficient d'interpolation entre l'avant-dernier et le dernier état simulé
+	 * @return fraction de pas non simulée [0-1[
+	 */
+	public float getAlpha(){
+		return (float) accumulator / stepNanos;
+	}
+
+	/**
+	 * Donne la durée d'un pas de simulation
+	 * @return durée en secondes
+	 */
+	public float getStep(){
+		return step;
+	}
+
+	/**
+	 * Donne le nombre maximum de pas simulés par frame
+	 * @return nombre de pas
+	 */
+	public int getMaxSteps(){
+		return maxSteps;
+	}
+
+	/**
+	 * Vide l'accumulateur, par exemple à la reprise après une pause
+	 */
+	public void reset(){
+		accumulator= 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package yoan.game.framework.modules.game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple buffer sans verrou entre un thread producteur et un thread consommateur
+ * Le producteur écrit dans le buffer arrière puis le publie, le consommateur récupère le dernier buffer publié :
+ * aucun des deux n'attend l'autre, le consommateur réutilise simplement son buffer tant que rien n'est publié
+ * Les buffers sont réutilisés : le producteur doit réécrire entièrement le buffer arrière avant chaque publication
+ * @param <T> type des buffers
+ * @author yoan
+ */
+public class TripleBuffer<T> {
+	/** Masque de l'indice du buffer du milieu dans l'état partagé */
+	static final int INDEX_MASK= 3;
+	/** Bit de l'état partagé indiquant que le buffer du milieu n'a pas encore été récupéré */
+	static final int FRESH= 4;
+	/** Les trois buffers */
+	final Object[] buffers;
+	/** Indice du buffer du milieu et bit FRESH, seul état partagé entre les deux threads */
+	final AtomicInteger middle= new AtomicInteger(1);
+	/** Indice du buffer en écriture, propre au producteur */
+	int back= 0;
+	/** Indice du buffer en lecture, propre au consommateur */
+	int front= 2;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param first : premier buffer
+	 * @param second : deuxième buffer
+	 * @param third : troisième buffer
+	 */
+	public TripleBuffer(T first, T second, T third){
+		if(first == null || second == null || third == null) throw new IllegalArgumentException("Buffers must not be null");
+		if(first == second || second == third || first == third) throw new IllegalArgumentException("Buffers must be distinct instances");
+		this.buffers= new Object[]{first, second, third};
+	}
+
+	/**
+	 * Donne le buffer en écriture, à n'appeler que par le producteur
+	 * @return buffer arrière
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBack(){
+		return (T) buffers[back];
+	}
+
+	/**
+	 * Publie le buffer en écriture et passe au buffer suivant, à n'appeler que par le producteur
+	 * Un buffer publié mais pas encore récupéré est remplacé
+	 */
+	public void publish(){
+		//l'écriture atomique rend les données du buffer visibles au consommateur
+		back= middle.getAndSet(back | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Récupère le dernier buffer publié, à n'appeler que par le consommateur
+	 * @return true si un nouveau buffer a été récupéré, false si le buffer en lecture est inchangé
+	 */
+	public boolean acquire(){
+		if((middle.get() & FRESH) == 0) return false;
+		front= middle.getAndSet(front) & INDEX_MASK;
+		return true;
+	}
+
+	/**
+	 * Donne le buffer en lecture, à n'appeler que par le consommateur
+	 * @return dernier buffer récupéré par acquire
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFront(){
+		return (T) buffers[front];
+	}
+
+	/**
+	 * Indique si un buffer publié n'a pas encore été récupéré par le consommateur
+	 * @return true si un nouveau buffer est disponible
+	 */
+	public boolean isFresh(){
+		return (middle.get() & FRESH) != 0;
+	}
+}
\ No newline at end of file
@@ -7,9 +7,11 @@ import yoan.game.framework.modules.audio.AndroidAudio;
 import yoan.game.framework.modules.audio.Audio;
 import yoan.game.framework.modules.fileio.AndroidFileIO;
 import yoan.game.framework.modules.fileio.FileIO;
+import yoan.game.framework.modules.game.FixedTimestep;
 import yoan.game.framework.modules.game.Game;
 import yoan.game.framework.modules.graphics.Graphics;
 import yoan.game.framework.modules.graphics.gl.GLGraphics;
+import yoan.game.framework.modules.graphics.gl.TextureLoader;
 import yoan.game.framework.modules.input.AndroidInput;
 import yoan.game.framework.modules.input.Input;
 import yoan.game.framework.modules.screen.Screen;
@@ -17,6 +19,8 @@ import android.app.Activity;
 import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.opengl.GLSurfaceView.Renderer;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
@@ -28,6 +32,10 @@ import android.view.WindowManager;
  * @author yoan
  */
 public abstract class GLGame extends Activity implements Game, Renderer {
+	/** Configuration EGL 16 bits sans depth ni stencil buffer : rouge, vert, bleu, alpha, depth, stencil */
+	public static final int[] EGL_CONFIG_RGB565= {5, 6, 5, 0, 0, 0};
+	/** Configuration EGL 24 bits sans depth ni stencil buffer : rouge, vert, bleu, alpha, depth, stencil */
+	public static final int[] EGL_CONFIG_RGB888= {8, 8, 8, 0, 0, 0};
 	/** Enum des états du jeu */
 	enum GLGameState{
 		/** le jeu est initialisé */
@@ -46,6 +54,8 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 	GLSurfaceView glView;
 	/** Gestion des graphismes via OpenGL ES */
 	GLGraphics glGraphics;
+	/** Chargement asynchrone des textures */
+	TextureLoader textureLoader;
 	/** Gestion des sons */
 	Audio audio;
 	/** Gestion des entrées */
@@ -62,6 +72,14 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 	Object stateChanged= new Object();
 	/** Temps au démarrage du jeu */
 	long startTime= System.nanoTime();
+	/** Pas de temps fixe de la simulation, null pour passer le temps réel écoulé à l'écran */
+	volatile FixedTimestep fixedTimestep;
+	/** Indique si les PipelinedScreen sont mis à jour par un thread séparé du thread de rendu */
+	volatile boolean pipelined;
+	/** Thread de mise à jour en mode pipeline, null s'il n'est pas démarré */
+	volatile UpdateThread<?> updateThread;
+	/** Ecran demandé par le thread de mise à jour, mis en place par le thread de rendu */
+	volatile Screen pendingScreen;
 	
 	/**
 	 * Création de l'activité du jeu
@@ -75,10 +93,16 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 		getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN);
 		//mise en place de la vue
 		glView= new GLSurfaceView(this);
+		//la configuration EGL doit être choisie avant la mise en place du renderer
+		int[] eglConfig= getEGLConfig();
+		if(eglConfig != null) glView.setEGLConfigChooser(eglConfig[0], eglConfig[1], eglConfig[2], eglConfig[3], eglConfig[4], eglConfig[5]);
+		//conservation éventuelle du contexte pendant la pause, si le device le permet les textures n'ont pas à être rechargées
+		if(VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB) glView.setPreserveEGLContextOnPause(isEGLContextPreserved());
 		glView.setRenderer(this);
 		setContentView(glView);
 		glGraphics= new GLGraphics(glView);
 		fileIO= new AndroidFileIO(this);
+		textureLoader= new TextureLoader(this);
 		audio= new AndroidAudio(this);
 		//pas de scaling pour l'input
 		input= new AndroidInput(this, glView, 1, 1);
@@ -106,6 +130,15 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 	public void onSurfaceCreated(GL10 gl, EGLConfig config){
 		//on garde l'instance de GL10
 		glGraphics.setGL(gl);
+		//nouveau contexte : les textures et VBO enregistrés sont recréés, les images étant décodées en parallèle
+		glGraphics.getResources().rebuild();
+		resumeScreen();
+	}
+
+	/**
+	 * Passe le jeu dans l'état Running et (re)démarre l'écran courant
+	 */
+	private void resumeScreen(){
 		//on verrouille le changement d'état 
 		synchronized(stateChanged){
 			//si le jeu initialisé on va sur l'écran de démarrage
@@ -115,6 +148,9 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 			//initialisation de l'écran
 			screen.resume();
 			startTime= System.nanoTime();
+			//le temps passé en pause n'est pas simulé
+			FixedTimestep fixedTimestep= this.fixedTimestep;
+			if(fixedTimestep != null) fixedTimestep.reset();
 		}
 	}
 	
@@ -124,7 +160,14 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 	 * @param width : nouvelle largeur de la vue
 	 * @param height : nouvelle hauteur de la vue
 	 */
-	public void onSurfaceChanged(GL10 gl, int width, int height) { /* inutilisé */ }
+	public void onSurfaceChanged(GL10 gl, int width, int height){
+		//si le contexte a été conservé pendant la pause, onSurfaceCreated n'est pas appelé au retour
+		boolean resumed;
+		synchronized(stateChanged){
+			resumed= state == GLGameState.Idle;
+		}
+		if(resumed) resumeScreen();
+	}
 	
 	/**
 	 * Appelé à chaque frame du thread de rendu
@@ -141,14 +184,42 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 		switch (state){
 			case Running : 
 				//durée de la précédente frame de rendu
-				float deltaTime= (System.nanoTime() - startTime) / 1000000000.0f;
-				startTime= System.nanoTime();
+				long now= System.nanoTime();
+				long elapsed= now - startTime;
+				float deltaTime= elapsed / 1000000000.0f;
+				startTime= now;
+				//changement d'écran demandé par le thread de mise à jour
+				Screen pendingScreen= this.pendingScreen;
+				if(pendingScreen != null){
+					this.pendingScreen= null;
+					setScreen(pendingScreen);
+				}
+				//envoi vers le GPU des textures chargées en fond
+				textureLoader.update();
+				if(pipelined && screen instanceof PipelinedScreen){
+					//mode pipeline : la mise à jour prépare la frame suivante pendant le dessin de celle-ci
+					if(updateThread == null) startUpdateThread((PipelinedScreen<?>) screen);
+					updateThread.present(deltaTime);
+					break;
+				}
+				stopUpdateThread();
 				//on transmet l'info au moteur de jeu
-				screen.update(deltaTime);
+				FixedTimestep fixedTimestep= this.fixedTimestep;
+				if(fixedTimestep == null){
+					screen.update(deltaTime);
+				}else{
+					//simulation par pas fixes, le rendu interpole avec getInterpolationAlpha
+					int steps= fixedTimestep.advance(elapsed);
+					float step= fixedTimestep.getStep();
+					for(int i= 0; i < steps; i++){
+						screen.update(step);
+					}
+				}
 				screen.present(deltaTime);
 				break;
 			case Paused :
-				//on met l'écran en pause
+				//on met l'écran en pause, après l'arrêt du thread de mise à jour
+				stopUpdateThread();
 				screen.pause();
 				//et on change l'état du jeu
 				synchronized(stateChanged){
@@ -158,8 +229,10 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 				break;
 			case Finished :
 				//arret de l'écran
+				stopUpdateThread();
 				screen.pause();
 				screen.dispose();
+				textureLoader.dispose();
 				//et on change l'état du jeu
 				synchronized(stateChanged){
 					this.state= GLGameState.Idle;
@@ -182,6 +255,8 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 			if(isFinishing()) state= GLGameState.Finished;
 			//sinon en pause
 			else state= GLGameState.Paused;
+			//en rendu à la demande, une frame est nécessaire pour que le thread de rendu traite le nouvel état
+			glView.requestRender();
 			//on attend une notification indiquant que le thread de rendu a bien géré le nouvel état avant de faire la suite
 			while(true){
 				try{
@@ -195,6 +270,118 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 		super.onPause();
 	}
 	
+	/**
+	 * Donne la configuration EGL demandée à la création de la vue, à surcharger pour la modifier
+	 * Un jeu 2D n'a pas besoin de depth buffer, une configuration 16 bits réduit la bande passante mémoire
+	 * @return tailles rouge, vert, bleu, alpha, depth, stencil (EGL_CONFIG_RGB565...), null pour la configuration par défaut
+	 */
+	protected int[] getEGLConfig(){
+		return null;
+	}
+
+	/**
+	 * Indique si le contexte EGL doit être conservé pendant la pause (Android 3.0+), à surcharger pour l'activer
+	 * Evite de recharger les textures au retour de pause, mais garde la mémoire GPU occupée en arrière plan
+	 * et certains drivers gèrent mal un contexte conservé : à réserver aux devices testés
+	 * Le device peut tout de même perdre le contexte, les ressources sont alors recréées par le GLResourceRegistry
+	 * @return false par défaut, le contexte est recréé à chaque reprise
+	 */
+	protected boolean isEGLContextPreserved(){
+		return false;
+	}
+
+	/**
+	 * Choisit le mode de rendu de la vue
+	 * Pour un écran statique, le rendu à la demande évite de redessiner la même image à chaque frame
+	 * @param continuously : true pour dessiner en continu, false pour ne dessiner qu'à chaque appel de requestRender
+	 */
+	public void setRenderContinuously(boolean continuously){
+		glView.setRenderMode(continuously ? GLSurfaceView.RENDERMODE_CONTINUOUSLY : GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+	}
+
+	/**
+	 * Demande le dessin d'une frame en mode de rendu à la demande
+	 * Peut être appelé depuis n'importe quel thread
+	 */
+	public void requestRender(){
+		glView.requestRender();
+	}
+	
+	/**
+	 * Active la simulation à pas de temps fixe : screen.update est appelé avec une durée constante,
+	 * autant de fois que nécessaire pour rattraper le temps réel écoulé
+	 * screen.present reçoit toujours le temps réel écoulé, l'état affiché s'interpole avec getInterpolationAlpha
+	 * @param step : durée d'un pas de simulation en secondes (1/60f...)
+	 * @param maxSteps : nombre maximum de pas simulés par frame
+	 */
+	public void setFixedTimestep(float step, int maxSteps){
+		this.fixedTimestep= new FixedTimestep(step, maxSteps);
+	}
+
+	/**
+	 * Active ou désactive le mode pipeline : si l'écran courant est un PipelinedScreen,
+	 * screen.update est appelé par un thread séparé qui prépare la frame suivante pendant que le thread de rendu dessine
+	 * Le changement est pris en compte à la frame suivante
+	 * @param pipelined : true pour mettre à jour les PipelinedScreen dans un thread séparé
+	 */
+	public void setPipelined(boolean pipelined){
+		this.pipelined= pipelined;
+	}
+
+	/**
+	 * Indique si le mode pipeline est demandé
+	 * @return true si les PipelinedScreen sont mis à jour dans un thread séparé
+	 */
+	public boolean isPipelined(){
+		return pipelined;
+	}
+
+	/**
+	 * Démarre le thread de mise à jour de l'écran courant
+	 * @param pipelinedScreen : écran courant, vu comme producteur d'états de rendu
+	 */
+	private <T> void startUpdateThread(PipelinedScreen<T> pipelinedScreen){
+		UpdateThread<T> thread= new UpdateThread<T>(this, screen, pipelinedScreen);
+		updateThread= thread;
+		thread.start();
+	}
+
+	/**
+	 * Arrête le thread de mise à jour s'il est démarré et attend sa fin
+	 */
+	private void stopUpdateThread(){
+		UpdateThread<?> thread= updateThread;
+		if(thread == null) return;
+		thread.shutdown();
+		updateThread= null;
+	}
+
+	/**
+	 * Revient à la simulation à pas de temps variable, screen.update reçoit le temps réel écoulé
+	 */
+	public void setVariableTimestep(){
+		this.fixedTimestep= null;
+	}
+
+	/**
+	 * Donne le coefficient d'interpolation du rendu entre les deux derniers états simulés
+	 * A utiliser dans screen.present : état affiché = précédent + (courant - précédent) * alpha
+	 * En mode pipeline, à appeler depuis PipelinedScreen.writeRenderState et à garder dans l'état de rendu
+	 * @return fraction de pas non simulée [0-1[, 1 en pas de temps variable
+	 */
+	public float getInterpolationAlpha(){
+		FixedTimestep fixedTimestep= this.fixedTimestep;
+		return fixedTimestep == null ? 1 : fixedTimestep.getAlpha();
+	}
+
+	/**
+	 * Donne la simulation à pas de temps fixe
+	 * @return pas de temps fixe, null en pas de temps variable
+	 */
+	public FixedTimestep getFixedTimestep(){
+		return fixedTimestep;
+	}
+	
 	/** 
 	 * Accès au gestionnaire des graphismes openGL ES
 	 * @return Graphics 
@@ -203,6 +390,14 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 		return glGraphics;
 	}
 	
+	/** 
+	 * Accès au chargement asynchrone des textures
+	 * @return TextureLoader 
+	 */
+	public TextureLoader getTextureLoader(){
+		return textureLoader;
+	}
+	
 	/** 
 	 * Accès au gestionnaire des entrées
 	 * @return Input 
@@ -240,6 +435,13 @@ public abstract class GLGame extends Activity implements Game, Renderer {
 	 */
 	public void setScreen(Screen screen){
 		if(screen == null) throw new IllegalArgumentException("Screen must not be null");
+		if(Thread.currentThread() == updateThread){
+			//le changement d'écran peut toucher à OpenGL : il est fait par le thread de rendu à la frame suivante
+			pendingScreen= screen;
+			updateThread.requestStop();
+			return;
+		}
+		stopUpdateThread();
 		//arrêt de l'écran courant
 		this.screen.pause();
 		this.screen.dispose();
@@ -0,0 +1,38 @@
+package yoan.game.framework.modules.game.gl;
+
+/**
+ * Ecran pouvant être mis à jour par un thread séparé du thread de rendu (cf. GLGame.setPipelined)
+ * A implémenter par une sous-classe de Screen : screen.update est appelé par le thread de mise à jour,
+ * qui copie ensuite dans un état de rendu tout ce dont le dessin a besoin ;
+ * le thread de rendu dessine en même temps l'état de rendu de la frame précédente
+ * En mode pipeline, screen.update et writeRenderState s'exécutent sans contexte OpenGL : les appels GL y échouent sans erreur,
+ * Texture, Vertices, TextureManager, SpriteBatcher ou SpriteCache ne doivent être créés, chargés ou libérés que dans present
+ * Les objets avec un cache calculé à la demande ne sont pas thread-safe et ne doivent pas être partagés entre les deux threads :
+ * une Camera2D utilisée par touchToWorld dans update et par setViewportAndMatrices dans present serait modifiée par les deux threads en même temps.
+ * La caméra de dessin appartient au thread de rendu : sa position, son zoom et sa rotation sont copiés dans l'état de rendu
+ * par writeRenderState puis appliqués à cette caméra dans present, le thread de mise à jour gardant sa propre caméra pour touchToWorld
+ * @param <T> type de l'état de rendu
+ * @author yoan
+ */
+public interface PipelinedScreen<T> {
+	/**
+	 * Crée un état de rendu vide, appelé trois fois au démarrage du thread de mise à jour
+	 * @return nouvel état de rendu
+	 */
+	public T createRenderState();
+
+	/**
+	 * Copie l'état du jeu dans un état de rendu, appelé par le thread de mise à jour après screen.update
+	 * L'état de rendu est réutilisé : il doit être entièrement réécrit
+	 * @param state : état de rendu à remplir
+	 */
+	public void writeRenderState(T state);
+
+	/**
+	 * Dessine un état de rendu, appelé par le thread de rendu à la place de screen.present
+	 * Ne doit lire que l'état de rendu : l'état du jeu est modifié en même temps par le thread de mise à jour
+	 * @param deltaTime : temps écoulé depuis la frame de rendu précédente
+	 * @param state : dernier état de rendu publié, un état vide tant qu'aucun n'a été publié
+	 */
+	public void present(float deltaTime, T state);
+}
\ No newline at end of file
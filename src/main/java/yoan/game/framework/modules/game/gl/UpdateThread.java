@@ -0,0 +1,115 @@
+package yoan.game.framework.modules.game.gl;
+
+import java.util.concurrent.locks.LockSupport;
+
+import yoan.game.framework.modules.game.FixedTimestep;
+import yoan.game.framework.modules.game.TripleBuffer;
+import yoan.game.framework.modules.screen.Screen;
+
+/**
+ * Thread de mise à jour d'un PipelinedScreen en mode pipeline
+ * Chaque itération met à jour l'écran, remplit un état de rendu et le publie dans un triple buffer,
+ * puis attend que le thread de rendu l'ait récupéré : la mise à jour garde une frame d'avance sur le rendu
+ * @param <T> type de l'état de rendu
+ * @author yoan
+ */
+class UpdateThread<T> extends Thread {
+	/** Attente maximum entre deux vérifications de la récupération de l'état publié en nanosecondes */
+	static final long PARK_NANOS= 1000000;
+	/** L'instance du jeu */
+	final GLGame glGame;
+	/** Ecran mis à jour */
+	final Screen screen;
+	/** Même écran, vu comme producteur d'états de rendu */
+	final PipelinedScreen<T> pipelinedScreen;
+	/** Etats de rendu échangés avec le thread de rendu */
+	final TripleBuffer<T> states;
+	/** Indique si le thread doit continuer */
+	volatile boolean running= true;
+	/** Erreur survenue dans la mise à jour, remontée sur le thread de rendu */
+	volatile Throwable error;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param glGame : l'instance du jeu
+	 * @param screen : écran à mettre à jour
+	 * @param pipelinedScreen : même écran, vu comme producteur d'états de rendu
+	 */
+	UpdateThread(GLGame glGame, Screen screen, PipelinedScreen<T> pipelinedScreen){
+		super("UpdateThread");
+		this.glGame= glGame;
+		this.screen= screen;
+		this.pipelinedScreen= pipelinedScreen;
+		this.states= new TripleBuffer<T>(pipelinedScreen.createRenderState(), pipelinedScreen.createRenderState(), pipelinedScreen.createRenderState());
+	}
+
+	/**
+	 * Boucle de mise à jour
+	 */
+	@Override
+	public void run(){
+		long startTime= System.nanoTime();
+		try{
+			while(running){
+				long now= System.nanoTime();
+				long elapsed= now - startTime;
+				startTime= now;
+				FixedTimestep fixedTimestep= glGame.fixedTimestep;
+				if(fixedTimestep == null){
+					screen.update(elapsed / 1000000000.0f);
+				}else{
+					int steps= fixedTimestep.advance(elapsed);
+					float step= fixedTimestep.getStep();
+					for(int i= 0; i < steps; i++){
+						screen.update(step);
+					}
+				}
+				//setScreen a pu être appelé pendant la mise à jour
+				if(!running) break;
+				pipelinedScreen.writeRenderState(states.getBack());
+				states.publish();
+				//une frame d'avance suffit : on attend que le rendu récupère l'état publié
+				while(running && states.isFresh()){
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+			}
+		}catch(Throwable e){
+			error= e;
+		}
+	}
+
+	/**
+	 * Dessine le dernier état de rendu publié, appelé par le thread de rendu
+	 * @param deltaTime : temps écoulé depuis la frame de rendu précédente
+	 */
+	void present(float deltaTime){
+		Throwable error= this.error;
+		if(error != null) throw new RuntimeException("Update thread failed", error);
+		//le thread de mise à jour peut préparer l'état suivant pendant le dessin
+		if(states.acquire()) LockSupport.unpark(this);
+		pipelinedScreen.present(deltaTime, states.getFront());
+	}
+
+	/**
+	 * Demande l'arrêt du thread après l'itération en cours, sans attendre
+	 */
+	void requestStop(){
+		running= false;
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Arrête le thread et attend sa fin
+	 */
+	void shutdown(){
+		requestStop();
+		while(true){
+			try{
+				join();
+				return;
+			}catch(InterruptedException e){
+				// retry
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package yoan.game.framework.modules.graphics;
 
 import yoan.game.framework.modules.game.AndroidGame;
+import yoan.game.framework.modules.game.FixedTimestep;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
@@ -23,6 +24,8 @@ public class AndroidFastRenderView extends SurfaceView implements Runnable {
 	SurfaceHolder holder;
 	/** indique si le thread de rendu est actif */
 	volatile boolean running= false;
+	/** Pas de temps fixe de la simulation, null pour passer le temps réel écoulé à l'écran */
+	volatile FixedTimestep fixedTimestep;
 	
 	/**
 	 * Constructeur
@@ -44,6 +47,9 @@ public class AndroidFastRenderView extends SurfaceView implements Runnable {
 	 * Lance le thread de rendu
 	 */
 	public void resume(){
+		//le temps passé en pause n'est pas simulé
+		FixedTimestep fixedTimestep= this.fixedTimestep;
+		if(fixedTimestep != null) fixedTimestep.reset();
 		running= true;
 		renderThread= new Thread(this);
 		renderThread.start();
@@ -61,10 +67,22 @@ public class AndroidFastRenderView extends SurfaceView implements Runnable {
 			//on ne fait rien tant que la Surface n'est pas disponible
 			if(!holder.getSurface().isValid()) continue;
 			//durée de la précédente frame de rendu
-			float deltaTime= (System.nanoTime() - startTime) / 1000000000.0f;
-			startTime= System.nanoTime();
+			long now= System.nanoTime();
+			long elapsed= now - startTime;
+			float deltaTime= elapsed / 1000000000.0f;
+			startTime= now;
 			//on transmet l'info au moteur de jeu
-			game.getCurrentScreen().update(deltaTime);
+			FixedTimestep fixedTimestep= this.fixedTimestep;
+			if(fixedTimestep == null){
+				game.getCurrentScreen().update(deltaTime);
+			}else{
+				//simulation par pas fixes, le rendu interpole avec getInterpolationAlpha
+				int steps= fixedTimestep.advance(elapsed);
+				float step= fixedTimestep.getStep();
+				for(int i= 0; i < steps; i++){
+					game.getCurrentScreen().update(step);
+				}
+			}
 			game.getCurrentScreen().present(deltaTime);
 			//on récupère un canvas pour effectuer le rendu à l'écran
 			Canvas canvas= holder.lockCanvas();
@@ -78,6 +96,23 @@ public class AndroidFastRenderView extends SurfaceView implements Runnable {
 		}
 	}
 	
+	/**
+	 * Choisit le pas de temps de la simulation
+	 * @param fixedTimestep : pas de temps fixe, null pour passer le temps réel écoulé à l'écran
+	 */
+	public void setFixedTimestep(FixedTimestep fixedTimestep){
+		this.fixedTimestep= fixedTimestep;
+	}
+	
+	/**
+	 * Donne le coefficient d'interpolation du rendu entre les deux derniers états simulés
+	 * @return fraction de pas non simulée [0-1[, 1 en pas de temps variable
+	 */
+	public float getInterpolationAlpha(){
+		FixedTimestep fixedTimestep= this.fixedTimestep;
+		return fixedTimestep == null ? 1 : fixedTimestep.getAlpha();
+	}
+	
 	/**
 	 * Stop le thread de rendu
 	 */
@@ -11,6 +11,12 @@ public class Animation {
 	public static final int ANIMATION_LOOPING= 0;
 	/** Mode d'animation finie à la dernière frame */
 	public static final int ANIMATION_NONLOOPING= 1;
+	/** Mode d'animation en boucle aller-retour */
+	public static final int ANIMATION_PINGPONG= 2;
+	/** Mode d'animation en boucle de la dernière frame à la première */
+	public static final int ANIMATION_LOOPING_REVERSED= 3;
+	/** Mode d'animation de la dernière frame à la première, finie à la première frame */
+	public static final int ANIMATION_NONLOOPING_REVERSED= 4;
 	/** Régions de chacune des frames dans la texture */
 	final TextureRegion[] keyFrames;
 	/** Durée d'une frame d'animation */
@@ -29,19 +35,54 @@ public class Animation {
 	/**
 	 * Calcule la frame correspondante au temps écoulé
 	 * @param stateTime : temps écoulé depuis le début de l'animation
-	 * @param mode : mode d'animation 
+	 * @param mode : mode d'animation (ANIMATION_LOOPING, ANIMATION_NONLOOPING, ANIMATION_PINGPONG...)
 	 * @return la texture correspondant à la frame calculée
 	 */
 	public TextureRegion getKeyFrame(float stateTime, int mode){
 		//calcul du nombre de frame depuis le début de l'animation
 		int frameNumber= (int) (stateTime / frameDuration);
-		if(mode == ANIMATION_NONLOOPING){
-			//on prend la dernière frame si l'animation est terminée
-			frameNumber= Math.min(keyFrames.length - 1, frameNumber);
-		}else{
-			//on prend la frame correspondante dans le tableau
-			frameNumber= frameNumber % keyFrames.length;
+		int last= keyFrames.length - 1;
+		switch (mode) {
+			case ANIMATION_NONLOOPING :
+				//on prend la dernière frame si l'animation est terminée
+				frameNumber= Math.min(last, frameNumber);
+				break;
+			case ANIMATION_PINGPONG :
+				//un aller-retour passe une seule fois par la première et la dernière frame
+				if(last > 0){
+					frameNumber= frameNumber % (2 * last);
+					if(frameNumber > last) frameNumber= 2 * last - frameNumber;
+				}else{
+					frameNumber= 0;
+				}
+				break;
+			case ANIMATION_LOOPING_REVERSED :
+				frameNumber= last - frameNumber % keyFrames.length;
+				break;
+			case ANIMATION_NONLOOPING_REVERSED :
+				frameNumber= last - Math.min(last, frameNumber);
+				break;
+			default :
+				//on prend la frame correspondante dans le tableau
+				frameNumber= frameNumber % keyFrames.length;
+				break;
 		}
 		return keyFrames[frameNumber];
 	}
+
+	/**
+	 * Donne le nombre de frames de l'animation
+	 * @return nombre de frames
+	 */
+	public int getFrameCount(){
+		return keyFrames.length;
+	}
+
+	/**
+	 * Donne la durée d'une frame de l'animation
+	 * @return durée d'une frame
+	 */
+	public float getFrameDuration(){
+		return frameDuration;
+	}
 }
\ No newline at end of file
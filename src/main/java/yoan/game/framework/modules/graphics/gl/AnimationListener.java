@@ -0,0 +1,23 @@
+package yoan.game.framework.modules.graphics.gl;
+
+/**
+ * Réception des évènements des entités d'un AnimationStore qui les ont activés
+ * Les évènements sont émis pendant AnimationStore.update
+ * @author yoan
+ */
+public interface AnimationListener {
+	/**
+	 * Appelé quand une entité passe à une nouvelle frame
+	 * @param entity : identifiant de l'entité dans le store
+	 * @param animation : identifiant de l'animation jouée
+	 * @param frameNumber : numéro de la nouvelle frame dans l'animation
+	 */
+	public void onFrameChanged(int entity, int animation, int frameNumber);
+
+	/**
+	 * Appelé une seule fois quand une animation non bouclée atteint sa dernière frame
+	 * @param entity : identifiant de l'entité dans le store
+	 * @param animation : identifiant de l'animation terminée
+	 */
+	public void onAnimationFinished(int entity, int animation);
+}
\ No newline at end of file
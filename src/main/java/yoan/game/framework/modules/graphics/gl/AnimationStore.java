@@ -0,0 +1,412 @@
+package yoan.game.framework.modules.graphics.gl;
+
+/**
+ * Etat d'animation d'un grand nombre d'entités, rangé dans des tableaux parallèles de types primitifs
+ * Toutes les entités sont avancées en une seule boucle par frame, sans division ni appel de méthode par entité :
+ * chaque animation enregistrée a des tables de frames pré-calculées pour chaque sens de lecture,
+ * et la frame courante de chaque entité est gardée comme un indice dans ces tables
+ * @author yoan
+ */
+public class AnimationStore {
+	/** Nombre de modes d'animation supportés */
+	static final int NUM_MODES= 5;
+	/** Table de frames utilisée par chaque mode */
+	static final int[] MODE_SEQUENCES= {0, 0, 1, 2, 2};
+	/** Indique si chaque mode boucle */
+	static final boolean[] MODE_LOOPING= {true, false, true, true, false};
+	/** Nombre de tables de frames par animation : avant, aller-retour et arrière */
+	static final int NUM_SEQUENCES= 3;
+	/** Etat d'une entité : émet des évènements */
+	static final byte FLAG_EVENTS= 1;
+	/** Etat d'une entité : animation non bouclée terminée */
+	static final byte FLAG_FINISHED= 2;
+	/** Animation d'un emplacement libre */
+	static final int FREE= -1;
+
+	/** Nombre d'entités maximum */
+	final int capacity;
+	/** Temps écoulé depuis le début de l'animation de chaque entité, ramené dans le cycle pour les animations bouclées */
+	final float[] stateTimes;
+	/** Vitesse de lecture de chaque entité */
+	final float[] speeds;
+	/** Animation jouée par chaque entité, FREE pour un emplacement libre */
+	final int[] animationIds;
+	/** Mode d'animation de chaque entité */
+	final byte[] modes;
+	/** Etat de chaque entité (FLAG_EVENTS, FLAG_FINISHED) */
+	final byte[] flags;
+	/** Position de la frame courante de chaque entité dans les tables de frames */
+	final int[] currentFrames;
+	/** Emplacements libérés, réutilisés en priorité */
+	final int[] freeSlots;
+	/** Nombre d'emplacements libérés */
+	int numFree;
+	/** Nombre d'emplacements utilisés ou libérés, la boucle de mise à jour s'arrête là */
+	int size;
+
+	/** Nombre de frames par unité de temps de chaque animation */
+	float[] frameRates;
+	/** Durée d'un cycle de chaque table de frames */
+	float[] sequenceDurations;
+	/** Début de chaque table de frames dans frameRegions */
+	int[] sequenceStarts;
+	/** Nombre de frames de chaque table de frames */
+	int[] sequenceLengths;
+	/** Nombre d'animations enregistrées */
+	int numAnimations;
+	/** Tables de frames de toutes les animations mises bout à bout */
+	TextureRegion[] frameRegions;
+	/** Numéro dans son animation de chaque frame des tables */
+	short[] frameNumbers;
+	/** Nombre de frames utilisées dans les tables */
+	int numFrames;
+	/** Destinataire des évènements, null si aucun */
+	AnimationListener listener;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param capacity : nombre d'entités maximum
+	 */
+	public AnimationStore(int capacity){
+		if(capacity <= 0) throw new IllegalArgumentException("Capacity must be strictly positive");
+		this.capacity= capacity;
+		this.stateTimes= new float[capacity];
+		this.speeds= new float[capacity];
+		this.animationIds= new int[capacity];
+		this.modes= new byte[capacity];
+		this.flags= new byte[capacity];
+		this.currentFrames= new int[capacity];
+		this.freeSlots= new int[capacity];
+		this.frameRates= new float[8];
+		this.sequenceDurations= new float[8 * NUM_SEQUENCES];
+		this.sequenceStarts= new int[8 * NUM_SEQUENCES];
+		this.sequenceLengths= new int[8 * NUM_SEQUENCES];
+		this.frameRegions= new TextureRegion[64];
+		this.frameNumbers= new short[64];
+	}
+
+	/**
+	 * Enregistre une animation et pré-calcule ses tables de frames
+	 * @param animation : animation à enregistrer
+	 * @return identifiant de l'animation dans le store
+	 */
+	public int addAnimation(Animation animation){
+		int count= animation.keyFrames.length;
+		if(count == 0) throw new IllegalArgumentException("Animation must have at least one frame");
+		if(count > Short.MAX_VALUE) throw new IllegalArgumentException("Animation has too many frames");
+		if(animation.frameDuration <= 0) throw new IllegalArgumentException("Frame duration must be strictly positive");
+		if(numAnimations == frameRates.length){
+			frameRates= grow(frameRates, numAnimations * 2);
+			sequenceDurations= grow(sequenceDurations, numAnimations * 2 * NUM_SEQUENCES);
+			sequenceStarts= grow(sequenceStarts, numAnimations * 2 * NUM_SEQUENCES);
+			sequenceLengths= grow(sequenceLengths, numAnimations * 2 * NUM_SEQUENCES);
+		}
+		int id= numAnimations++;
+		frameRates[id]= 1 / animation.frameDuration;
+		//avant : 0..n-1
+		int sequence= id * NUM_SEQUENCES;
+		beginSequence(sequence, count, animation.frameDuration);
+		for(int i= 0; i < count; i++){
+			addFrame(animation, i);
+		}
+		//aller-retour : 0..n-1 puis n-2..1
+		sequence++;
+		int pingPongCount= count > 2 ? 2 * count - 2 : count;
+		beginSequence(sequence, pingPongCount, animation.frameDuration);
+		for(int i= 0; i < pingPongCount; i++){
+			addFrame(animation, i < count ? i : 2 * count - 2 - i);
+		}
+		//arrière : n-1..0
+		sequence++;
+		beginSequence(sequence, count, animation.frameDuration);
+		for(int i= count - 1; i >= 0; i--){
+			addFrame(animation, i);
+		}
+		return id;
+	}
+
+	/**
+	 * Démarre une table de frames à la suite des tables existantes
+	 * @param sequence : indice de la table
+	 * @param length : nombre de frames de la table
+	 * @param frameDuration : durée d'une frame
+	 */
+	private void beginSequence(int sequence, int length, float frameDuration){
+		sequenceStarts[sequence]= numFrames;
+		sequenceLengths[sequence]= length;
+		sequenceDurations[sequence]= length * frameDuration;
+		if(numFrames + length > frameRegions.length){
+			int size= Math.max(numFrames + length, frameRegions.length * 2);
+			TextureRegion[] regions= new TextureRegion[size];
+			System.arraycopy(frameRegions, 0, regions, 0, numFrames);
+			frameRegions= regions;
+			short[] numbers= new short[size];
+			System.arraycopy(frameNumbers, 0, numbers, 0, numFrames);
+			frameNumbers= numbers;
+		}
+	}
+
+	/**
+	 * Ajoute une frame à la table en cours
+	 * @param animation : animation de la frame
+	 * @param frameNumber : numéro de la frame dans l'animation
+	 */
+	private void addFrame(Animation animation, int frameNumber){
+		frameRegions[numFrames]= animation.keyFrames[frameNumber];
+		frameNumbers[numFrames]= (short) frameNumber;
+		numFrames++;
+	}
+
+	/**
+	 * Agrandit un tableau
+	 * @param array : tableau à agrandir
+	 * @param size : nouvelle taille
+	 * @return nouveau tableau contenant les anciennes valeurs
+	 */
+	private static float[] grow(float[] array, int size){
+		float[] newArray= new float[size];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	/**
+	 * Agrandit un tableau
+	 * @param array : tableau à agrandir
+	 * @param size : nouvelle taille
+	 * @return nouveau tableau contenant les anciennes valeurs
+	 */
+	private static int[] grow(int[] array, int size){
+		int[] newArray= new int[size];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	/**
+	 * Ajoute une entité sans évènements
+	 * @param animationId : identifiant de l'animation à jouer
+	 * @param mode : mode d'animation (Animation.ANIMATION_LOOPING, ANIMATION_NONLOOPING, ANIMATION_PINGPONG...)
+	 * @return identifiant de l'entité, valable jusqu'à son retrait
+	 */
+	public int add(int animationId, int mode){
+		return add(animationId, mode, false);
+	}
+
+	/**
+	 * Ajoute une entité
+	 * @param animationId : identifiant de l'animation à jouer
+	 * @param mode : mode d'animation (Animation.ANIMATION_LOOPING, ANIMATION_NONLOOPING, ANIMATION_PINGPONG...)
+	 * @param events : indique si l'entité émet des évènements vers l'AnimationListener
+	 * @return identifiant de l'entité, valable jusqu'à son retrait
+	 */
+	public int add(int animationId, int mode, boolean events){
+		checkAnimation(animationId, mode);
+		int entity;
+		if(numFree > 0){
+			entity= freeSlots[--numFree];
+		}else{
+			if(size == capacity) throw new IllegalStateException("Animation store is full (" + capacity + " entities)");
+			entity= size++;
+		}
+		speeds[entity]= 1;
+		start(entity, animationId, mode);
+		setEvents(entity, events);
+		return entity;
+	}
+
+	/**
+	 * Retire une entité, son identifiant pourra être réutilisé
+	 * @param entity : identifiant de l'entité
+	 */
+	public void remove(int entity){
+		checkEntity(entity);
+		animationIds[entity]= FREE;
+		freeSlots[numFree++]= entity;
+	}
+
+	/**
+	 * Retire toutes les entités, les animations enregistrées sont gardées
+	 */
+	public void clear(){
+		size= 0;
+		numFree= 0;
+	}
+
+	/**
+	 * Vérifie qu'un identifiant correspond à une entité présente
+	 * @param entity : identifiant de l'entité
+	 */
+	private void checkEntity(int entity){
+		if(entity < 0 || entity >= size || animationIds[entity] == FREE) throw new IllegalArgumentException("Unknown entity " + entity);
+	}
+
+	/**
+	 * Démarre une animation depuis le début pour une entité
+	 * @param entity : identifiant de l'entité
+	 * @param animationId : identifiant de l'animation à jouer
+	 * @param mode : mode d'animation (Animation.ANIMATION_LOOPING, ANIMATION_NONLOOPING, ANIMATION_PINGPONG...)
+	 */
+	public void play(int entity, int animationId, int mode){
+		checkEntity(entity);
+		checkAnimation(animationId, mode);
+		start(entity, animationId, mode);
+	}
+
+	/**
+	 * Vérifie qu'une animation est enregistrée et qu'un mode est supporté
+	 * @param animationId : identifiant de l'animation
+	 * @param mode : mode d'animation
+	 */
+	private void checkAnimation(int animationId, int mode){
+		if(animationId < 0 || animationId >= numAnimations) throw new IllegalArgumentException("Unknown animation " + animationId);
+		if(mode < 0 || mode >= NUM_MODES) throw new IllegalArgumentException("Unknown animation mode " + mode);
+	}
+
+	/**
+	 * Démarre une animation depuis le début, sans vérification
+	 * @param entity : identifiant de l'entité
+	 * @param animationId : identifiant de l'animation à jouer
+	 * @param mode : mode d'animation
+	 */
+	private void start(int entity, int animationId, int mode){
+		animationIds[entity]= animationId;
+		modes[entity]= (byte) mode;
+		stateTimes[entity]= 0;
+		flags[entity]&= ~FLAG_FINISHED;
+		currentFrames[entity]= sequenceStarts[animationId * NUM_SEQUENCES + MODE_SEQUENCES[mode]];
+	}
+
+	/**
+	 * Active ou désactive les évènements d'une entité
+	 * @param entity : identifiant de l'entité
+	 * @param events : indique si l'entité émet des évènements vers l'AnimationListener
+	 */
+	public void setEvents(int entity, boolean events){
+		checkEntity(entity);
+		if(events){
+			flags[entity]|= FLAG_EVENTS;
+		}else{
+			flags[entity]&= ~FLAG_EVENTS;
+		}
+	}
+
+	/**
+	 * Modifie la vitesse de lecture d'une entité
+	 * @param entity : identifiant de l'entité
+	 * @param speed : coefficient appliqué au temps écoulé, 0 pour mettre en pause
+	 */
+	public void setSpeed(int entity, float speed){
+		checkEntity(entity);
+		if(speed < 0) throw new IllegalArgumentException("Speed must be positive, use a reversed mode to play backwards");
+		speeds[entity]= speed;
+	}
+
+	/**
+	 * Choisit le destinataire des évènements
+	 * @param listener : destinataire, null pour ne plus émettre d'évènements
+	 */
+	public void setListener(AnimationListener listener){
+		this.listener= listener;
+	}
+
+	/**
+	 * Avance l'animation de toutes les entités en une seule passe
+	 * @param deltaTime : temps écoulé depuis la dernière mise à jour
+	 */
+	public void update(float deltaTime){
+		AnimationListener listener= this.listener;
+		for(int entity= 0; entity < size; entity++){
+			int animationId= animationIds[entity];
+			if(animationId == FREE) continue;
+			int mode= modes[entity];
+			int sequence= animationId * NUM_SEQUENCES + MODE_SEQUENCES[mode];
+			int length= sequenceLengths[sequence];
+			float stateTime= stateTimes[entity] + deltaTime * speeds[entity];
+			int frame;
+			if(MODE_LOOPING[mode]){
+				//le temps reste dans le cycle : pas de modulo par frame et pas de perte de précision au fil du temps
+				float duration= sequenceDurations[sequence];
+				if(stateTime >= duration) stateTime%= duration;
+				frame= (int) (stateTime * frameRates[animationId]);
+				if(frame >= length) frame= length - 1;
+			}else{
+				frame= (int) (stateTime * frameRates[animationId]);
+				if(frame >= length){
+					frame= length - 1;
+					//le temps n'avance plus une fois l'animation terminée
+					stateTime= sequenceDurations[sequence];
+				}
+			}
+			stateTimes[entity]= stateTime;
+			int lastFrame= sequenceStarts[sequence] + length - 1;
+			frame+= sequenceStarts[sequence];
+			boolean events= listener != null && (flags[entity] & FLAG_EVENTS) != 0;
+			if(frame != currentFrames[entity]){
+				currentFrames[entity]= frame;
+				if(events) listener.onFrameChanged(entity, animationId, frameNumbers[frame]);
+			}
+			if(MODE_LOOPING[mode] || frame != lastFrame || (flags[entity] & FLAG_FINISHED) != 0) continue;
+			flags[entity]|= FLAG_FINISHED;
+			if(events) listener.onAnimationFinished(entity, animationId);
+		}
+	}
+
+	/**
+	 * Donne la frame courante d'une entité
+	 * @param entity : identifiant de l'entité
+	 * @return région de texture à afficher
+	 */
+	public TextureRegion getKeyFrame(int entity){
+		checkEntity(entity);
+		return frameRegions[currentFrames[entity]];
+	}
+
+	/**
+	 * Donne le numéro de la frame courante d'une entité dans son animation
+	 * @param entity : identifiant de l'entité
+	 * @return numéro de frame
+	 */
+	public int getFrameNumber(int entity){
+		checkEntity(entity);
+		return frameNumbers[currentFrames[entity]];
+	}
+
+	/**
+	 * Donne l'animation jouée par une entité
+	 * @param entity : identifiant de l'entité
+	 * @return identifiant de l'animation, FREE si l'entité a été retirée
+	 */
+	public int getAnimation(int entity){
+		return animationIds[entity];
+	}
+
+	/**
+	 * Donne le temps écoulé dans l'animation d'une entité
+	 * @param entity : identifiant de l'entité
+	 * @return temps écoulé, ramené dans le cycle pour les animations bouclées
+	 */
+	public float getStateTime(int entity){
+		checkEntity(entity);
+		return stateTimes[entity];
+	}
+
+	/**
+	 * Indique si l'animation non bouclée d'une entité est terminée
+	 * @param entity : identifiant de l'entité
+	 * @return true si la dernière frame est atteinte
+	 */
+	public boolean isFinished(int entity){
+		checkEntity(entity);
+		int mode= modes[entity];
+		if(MODE_LOOPING[mode]) return false;
+		int sequence= animationIds[entity] * NUM_SEQUENCES + MODE_SEQUENCES[mode];
+		return currentFrames[entity] == sequenceStarts[sequence] + sequenceLengths[sequence] - 1;
+	}
+
+	/**
+	 * Donne le nombre d'entités présentes
+	 * @return nombre d'entités
+	 */
+	public int size(){
+		return size - numFree;
+	}
+}
\ No newline at end of file
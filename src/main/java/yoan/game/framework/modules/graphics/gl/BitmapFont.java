@@ -0,0 +1,482 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import yoan.game.framework.modules.fileio.FileIO;
+import yoan.game.framework.modules.game.gl.GLGame;
+
+/**
+ * Font à chasse variable décrite par un fichier BMFont (.fnt au format texte ou binaire)
+ * Chaque glyphe a sa propre avance et son propre décalage, les paires de caractères peuvent avoir un crénage,
+ * les glyphes peuvent être réparties sur plusieurs pages de texture et couvrir tout le plan multilingue de base d'Unicode
+ * Le système de coordonnées est celui du jeu : l'axe des ordonnées est orienté vers le haut
+ * @author yoan
+ */
+public class BitmapFont {
+	/** Indice de glyphe d'un caractère absent de la font */
+	static final short NO_GLYPH= -1;
+	/** Version du format binaire BMFont supportée */
+	static final int BINARY_VERSION= 3;
+	/** Textures des pages de la font */
+	final Texture[] pages;
+	/** Hauteur d'une ligne de texte */
+	final int lineHeight;
+	/** Distance entre le haut d'une ligne et la ligne de base */
+	final int base;
+	/** Indice de glyphe de chaque caractère, par blocs de 256 caractères alloués à la demande */
+	final short[][] glyphBlocks= new short[256][];
+	/** Nombre de glyphes */
+	int numGlyphs;
+	/** Région de texture de chaque glyphe, null pour une glyphe sans image (espace) */
+	TextureRegion[] regions;
+	/** Abcisse de chaque glyphe dans sa page */
+	short[] glyphX;
+	/** Ordonnée de chaque glyphe dans sa page */
+	short[] glyphY;
+	/** Largeur de chaque glyphe */
+	short[] glyphWidth;
+	/** Hauteur de chaque glyphe */
+	short[] glyphHeight;
+	/** Décalage horizontal de l'image de chaque glyphe par rapport au curseur */
+	short[] xOffset;
+	/** Décalage vertical de l'image de chaque glyphe par rapport au haut de la ligne (vers le bas) */
+	short[] yOffset;
+	/** Avance du curseur après chaque glyphe */
+	short[] xAdvance;
+	/** Page de chaque glyphe */
+	byte[] glyphPage;
+	/** Indique si une glyphe est le premier caractère d'au moins une paire de crénage */
+	boolean[] kerningFirst;
+	/** Paires de crénage triées : premier caractère sur les 16 bits de poids fort, second sur les 16 bits de poids faible */
+	int[] kerningPairs;
+	/** Crénage de chaque paire */
+	short[] kerningAmounts;
+	/** Nombre de paires de crénage */
+	int numKernings;
+
+	/**
+	 * Constructeur à partir d'un fichier BMFont
+	 * Les pages sont chargées depuis le dossier du fichier .fnt
+	 * @param glGame : l'instance du jeu
+	 * @param fileName : nom du fichier .fnt, au format texte ou binaire
+	 */
+	public BitmapFont(GLGame glGame, String fileName){
+		this.glyphX= new short[128];
+		this.glyphY= new short[128];
+		this.glyphWidth= new short[128];
+		this.glyphHeight= new short[128];
+		this.xOffset= new short[128];
+		this.yOffset= new short[128];
+		this.xAdvance= new short[128];
+		this.glyphPage= new byte[128];
+		this.kerningPairs= new int[16];
+		this.kerningAmounts= new short[16];
+		//lecture du fichier de description
+		FileIO fileIO= glGame.getFileIO();
+		String[] pageFiles;
+		int[] common= new int[2];
+		InputStream in= null;
+		try{
+			in= fileIO.readAsset(fileName);
+			DataInputStream data= new DataInputStream(new BufferedInputStream(in));
+			//les fichiers binaires commencent par "BMF"
+			data.mark(4);
+			boolean binary= data.read() == 'B' && data.read() == 'M' && data.read() == 'F';
+			if(binary){
+				pageFiles= readBinary(data, common);
+			}else{
+				data.reset();
+				pageFiles= readText(new BufferedReader(new InputStreamReader(data, "UTF-8")), common);
+			}
+		}catch(IOException e){
+			throw new RuntimeException("Couldn't load font '" + fileName + "'", e);
+		}finally{
+			if(in != null) try{
+				in.close();
+			}catch(IOException e){}
+		}
+		this.lineHeight= common[0];
+		this.base= common[1];
+		//chargement des pages depuis le dossier de la font
+		String folder= fileName.substring(0, fileName.lastIndexOf('/') + 1);
+		this.pages= new Texture[pageFiles.length];
+		for(int i= 0; i < pages.length; i++){
+			if(pageFiles[i] == null) throw new RuntimeException("Missing page " + i + " in font '" + fileName + "'");
+			pages[i]= new Texture(glGame, folder + pageFiles[i]);
+		}
+		createRegions();
+		sortKernings();
+	}
+
+	/**
+	 * Lit un descripteur BMFont au format texte
+	 * @param reader : lecteur du fichier
+	 * @param common : reçoit la hauteur de ligne et la ligne de base
+	 * @return nom des fichiers des pages
+	 * @throws IOException : en cas de problème de lecture
+	 */
+	private String[] readText(BufferedReader reader, int[] common) throws IOException{
+		String[] pageFiles= new String[0];
+		String line;
+		while((line= reader.readLine()) != null){
+			if(line.startsWith("char ")){
+				addGlyph(getInt(line, "id"), getInt(line, "x"), getInt(line, "y"), getInt(line, "width"), getInt(line, "height"), getInt(line, "xoffset"), getInt(line, "yoffset"), getInt(line, "xadvance"), getInt(line, "page"));
+			}else if(line.startsWith("kerning ")){
+				addKerning(getInt(line, "first"), getInt(line, "second"), getInt(line, "amount"));
+			}else if(line.startsWith("common ")){
+				common[0]= getInt(line, "lineHeight");
+				common[1]= getInt(line, "base");
+				pageFiles= new String[getInt(line, "pages")];
+			}else if(line.startsWith("page ")){
+				pageFiles[getInt(line, "id")]= getValue(line, "file");
+			}
+		}
+		return pageFiles;
+	}
+
+	/**
+	 * Donne la valeur d'un attribut d'une ligne d'un descripteur texte
+	 * @param line : ligne du fichier
+	 * @param key : nom de l'attribut
+	 * @return valeur sans guillemets, null si l'attribut est absent
+	 */
+	private static String getValue(String line, String key){
+		int start= line.indexOf(" " + key + "=");
+		if(start < 0) return null;
+		start+= key.length() + 2;
+		if(start < line.length() && line.charAt(start) == '"') return line.substring(start + 1, line.indexOf('"', start + 1));
+		int end= line.indexOf(' ', start);
+		return line.substring(start, end < 0 ? line.length() : end);
+	}
+
+	/**
+	 * Donne la valeur entière d'un attribut d'une ligne d'un descripteur texte
+	 * @param line : ligne du fichier
+	 * @param key : nom de l'attribut
+	 * @return valeur, 0 si l'attribut est absent
+	 */
+	private static int getInt(String line, String key){
+		String value= getValue(line, key);
+		return value == null ? 0 : Integer.parseInt(value.trim());
+	}
+
+	/**
+	 * Lit un descripteur BMFont au format binaire (version 3), l'entête "BMF" étant déjà lue
+	 * @param data : flux du fichier
+	 * @param common : reçoit la hauteur de ligne et la ligne de base
+	 * @return nom des fichiers des pages
+	 * @throws IOException : en cas de problème de lecture
+	 */
+	private String[] readBinary(DataInputStream data, int[] common) throws IOException{
+		int version= data.read();
+		if(version != BINARY_VERSION) throw new IOException("Unsupported BMFont binary version " + version);
+		String[] pageFiles= new String[0];
+		int type;
+		//suite de blocs : type sur 1 byte puis taille sur 4 bytes little endian
+		while((type= data.read()) != -1){
+			int size= readInt(data);
+			switch (type){
+				case 2 :
+					//common : lineHeight, base, scaleW, scaleH, pages, bitField, 4 canaux
+					common[0]= readShort(data) & 0xFFFF;
+					common[1]= readShort(data) & 0xFFFF;
+					readShort(data);
+					readShort(data);
+					pageFiles= new String[readShort(data) & 0xFFFF];
+					data.skipBytes(size - 10);
+					break;
+				case 3 :
+					//pages : noms de même longueur terminés par 0
+					int nameLength= size / Math.max(1, pageFiles.length);
+					byte[] name= new byte[nameLength];
+					for(int i= 0; i < pageFiles.length; i++){
+						data.readFully(name);
+						pageFiles[i]= new String(name, 0, nameLength - 1, "UTF-8");
+					}
+					data.skipBytes(size - nameLength * pageFiles.length);
+					break;
+				case 4 :
+					//chars : 20 bytes par glyphe
+					for(int i= 0; i < size / 20; i++){
+						int id= readInt(data);
+						int x= readShort(data) & 0xFFFF;
+						int y= readShort(data) & 0xFFFF;
+						int width= readShort(data) & 0xFFFF;
+						int height= readShort(data) & 0xFFFF;
+						int xoffset= readShort(data);
+						int yoffset= readShort(data);
+						int xadvance= readShort(data);
+						int page= data.read();
+						data.read();
+						addGlyph(id, x, y, width, height, xoffset, yoffset, xadvance, page);
+					}
+					break;
+				case 5 :
+					//kerning pairs : 10 bytes par paire
+					for(int i= 0; i < size / 10; i++){
+						addKerning(readInt(data), readInt(data), readShort(data));
+					}
+					break;
+				default :
+					//info et blocs inconnus
+					data.skipBytes(size);
+					break;
+			}
+		}
+		return pageFiles;
+	}
+
+	/**
+	 * Lit un entier 32 bits little endian
+	 * @param data : flux du fichier
+	 * @return entier lu
+	 * @throws IOException : en cas de problème de lecture
+	 */
+	private static int readInt(DataInputStream data) throws IOException{
+		return Integer.reverseBytes(data.readInt());
+	}
+
+	/**
+	 * Lit un entier 16 bits signé little endian
+	 * @param data : flux du fichier
+	 * @return entier lu
+	 * @throws IOException : en cas de problème de lecture
+	 */
+	private static short readShort(DataInputStream data) throws IOException{
+		return Short.reverseBytes(data.readShort());
+	}
+
+	/**
+	 * Ajoute une glyphe à la font, les caractères hors du plan multilingue de base sont ignorés
+	 * @param id : code Unicode du caractère
+	 * @param x : abcisse de la glyphe dans sa page
+	 * @param y : ordonnée de la glyphe dans sa page
+	 * @param width : largeur de la glyphe
+	 * @param height : hauteur de la glyphe
+	 * @param xoffset : décalage horizontal de l'image par rapport au curseur
+	 * @param yoffset : décalage vertical de l'image par rapport au haut de la ligne
+	 * @param xadvance : avance du curseur
+	 * @param page : page de la glyphe
+	 */
+	private void addGlyph(int id, int x, int y, int width, int height, int xoffset, int yoffset, int xadvance, int page){
+		if(id < 0 || id > Character.MAX_VALUE) return;
+		if(numGlyphs == glyphX.length){
+			int size= numGlyphs * 2;
+			glyphX= Arrays.copyOf(glyphX, size);
+			glyphY= Arrays.copyOf(glyphY, size);
+			glyphWidth= Arrays.copyOf(glyphWidth, size);
+			glyphHeight= Arrays.copyOf(glyphHeight, size);
+			xOffset= Arrays.copyOf(xOffset, size);
+			yOffset= Arrays.copyOf(yOffset, size);
+			xAdvance= Arrays.copyOf(xAdvance, size);
+			glyphPage= Arrays.copyOf(glyphPage, size);
+		}
+		short[] block= glyphBlocks[id >> 8];
+		if(block == null){
+			block= new short[256];
+			Arrays.fill(block, NO_GLYPH);
+			glyphBlocks[id >> 8]= block;
+		}
+		block[id & 0xFF]= (short) numGlyphs;
+		glyphX[numGlyphs]= (short) x;
+		glyphY[numGlyphs]= (short) y;
+		glyphWidth[numGlyphs]= (short) width;
+		glyphHeight[numGlyphs]= (short) height;
+		xOffset[numGlyphs]= (short) xoffset;
+		yOffset[numGlyphs]= (short) yoffset;
+		xAdvance[numGlyphs]= (short) xadvance;
+		glyphPage[numGlyphs]= (byte) page;
+		numGlyphs++;
+	}
+
+	/**
+	 * Ajoute une paire de crénage, les caractères hors du plan multilingue de base sont ignorés
+	 * @param first : code Unicode du premier caractère
+	 * @param second : code Unicode du second caractère
+	 * @param amount : ajustement de l'avance entre les deux caractères
+	 */
+	private void addKerning(int first, int second, int amount){
+		if(first < 0 || first > Character.MAX_VALUE || second < 0 || second > Character.MAX_VALUE || amount == 0) return;
+		if(numKernings == kerningPairs.length){
+			kerningPairs= Arrays.copyOf(kerningPairs, numKernings * 2);
+			kerningAmounts= Arrays.copyOf(kerningAmounts, numKernings * 2);
+		}
+		kerningPairs[numKernings]= first << 16 | second;
+		kerningAmounts[numKernings]= (short) amount;
+		numKernings++;
+	}
+
+	/**
+	 * Crée les régions de texture des glyphes une fois les pages chargées
+	 */
+	private void createRegions(){
+		regions= new TextureRegion[numGlyphs];
+		for(int i= 0; i < numGlyphs; i++){
+			if(glyphWidth[i] == 0 || glyphHeight[i] == 0) continue;
+			regions[i]= new TextureRegion(pages[glyphPage[i]], glyphX[i], glyphY[i], glyphWidth[i], glyphHeight[i]);
+		}
+	}
+
+	/**
+	 * Trie les paires de crénage pour la recherche dichotomique et marque les glyphes concernées
+	 */
+	private void sortKernings(){
+		//tri des paires et de leur crénage ensemble : paire signée sur les 48 bits de poids fort, crénage sur les 16 bits de poids faible
+		long[] sorted= new long[numKernings];
+		for(int i= 0; i < numKernings; i++){
+			sorted[i]= (long) kerningPairs[i] << 16 | (kerningAmounts[i] & 0xFFFF);
+		}
+		Arrays.sort(sorted);
+		kerningPairs= new int[numKernings];
+		kerningAmounts= new short[numKernings];
+		kerningFirst= new boolean[numGlyphs];
+		for(int i= 0; i < numKernings; i++){
+			kerningPairs[i]= (int) (sorted[i] >> 16);
+			kerningAmounts[i]= (short) sorted[i];
+			int first= getGlyph((char) (kerningPairs[i] >>> 16));
+			if(first != NO_GLYPH) kerningFirst[first]= true;
+		}
+	}
+
+	/**
+	 * Donne l'indice de la glyphe d'un caractère
+	 * @param c : caractère
+	 * @return indice de la glyphe, NO_GLYPH si le caractère est absent de la font
+	 */
+	int getGlyph(char c){
+		short[] block= glyphBlocks[c >> 8];
+		return block == null ? NO_GLYPH : block[c & 0xFF];
+	}
+
+	/**
+	 * Donne le crénage entre deux caractères
+	 * @param first : premier caractère
+	 * @param second : second caractère
+	 * @return ajustement de l'avance en pixel de la font, 0 si la paire n'a pas de crénage
+	 */
+	public int getKerning(char first, char second){
+		int glyph= getGlyph(first);
+		if(glyph == NO_GLYPH || !kerningFirst[glyph]) return 0;
+		int index= Arrays.binarySearch(kerningPairs, first << 16 | second);
+		return index < 0 ? 0 : kerningAmounts[index];
+	}
+
+	/**
+	 * Indique si la font contient un caractère
+	 * @param c : caractère
+	 * @return true si le caractère a une glyphe
+	 */
+	public boolean hasGlyph(char c){
+		return getGlyph(c) != NO_GLYPH;
+	}
+
+	/**
+	 * Donne la hauteur d'une ligne de texte
+	 * @return hauteur en pixel de la font
+	 */
+	public int getLineHeight(){
+		return lineHeight;
+	}
+
+	/**
+	 * Donne la distance entre le haut d'une ligne et la ligne de base
+	 * @return distance en pixel de la font
+	 */
+	public int getBase(){
+		return base;
+	}
+
+	/**
+	 * Donne les textures des pages de la font
+	 * @return textures des pages
+	 */
+	public Texture[] getPages(){
+		return pages;
+	}
+
+	/**
+	 * Calcule la largeur d'une partie d'un texte sur une seule ligne, crénage compris
+	 * @param text : texte
+	 * @param start : indice du premier caractère
+	 * @param end : indice suivant le dernier caractère
+	 * @return largeur en pixel de la font
+	 */
+	public int getWidth(CharSequence text, int start, int end){
+		int width= 0;
+		char previous= 0;
+		for(int i= start; i < end; i++){
+			char c= text.charAt(i);
+			int glyph= getGlyph(c);
+			if(glyph == NO_GLYPH) continue;
+			if(previous != 0) width+= getKerning(previous, c);
+			width+= xAdvance[glyph];
+			previous= c;
+		}
+		return width;
+	}
+
+	/**
+	 * Dessine un texte à l'échelle 1 avec la teinte du batcher
+	 * @param batcher : le batcher de sprite pour l'affichage
+	 * @param text : texte à afficher, '\n' passe à la ligne
+	 * @param x : abcisse du début de la première ligne
+	 * @param y : ordonnée de la ligne de base de la première ligne
+	 */
+	public void drawText(SpriteBatcher batcher, CharSequence text, float x, float y){
+		drawText(batcher, text, 0, text.length(), x, y, 1, batcher.getColor());
+	}
+
+	/**
+	 * Dessine une partie d'un texte, sans allocation
+	 * Les glyphes d'une font à plusieurs pages peuvent changer de texture, le batcher se vide alors automatiquement
+	 * @param batcher : le batcher de sprite pour l'affichage
+	 * @param text : texte à afficher, '\n' passe à la ligne
+	 * @param start : indice du premier caractère
+	 * @param end : indice suivant le dernier caractère
+	 * @param x : abcisse du début de la première ligne
+	 * @param y : ordonnée de la ligne de base de la première ligne
+	 * @param scale : taille d'un pixel de la font dans le jeu
+	 * @param color : teinte du texte, empaquetée via Vertices.packColor
+	 */
+	public void drawText(SpriteBatcher batcher, CharSequence text, int start, int end, float x, float y, float scale, int color){
+		float cursorX= x;
+		//haut de la ligne courante, les décalages verticaux BMFont sont orientés vers le bas
+		float lineTop= y + base * scale;
+		char previous= 0;
+		for(int i= start; i < end; i++){
+			char c= text.charAt(i);
+			if(c == '\n'){
+				cursorX= x;
+				lineTop-= lineHeight * scale;
+				previous= 0;
+				continue;
+			}
+			int glyph= getGlyph(c);
+			if(glyph == NO_GLYPH) continue;
+			if(previous != 0) cursorX+= getKerning(previous, c) * scale;
+			previous= c;
+			TextureRegion region= regions[glyph];
+			if(region != null){
+				float width= glyphWidth[glyph] * scale;
+				float height= glyphHeight[glyph] * scale;
+				batcher.drawSprite(cursorX + xOffset[glyph] * scale + width / 2, lineTop - yOffset[glyph] * scale - height / 2, width, height, region, color);
+			}
+			cursorX+= xAdvance[glyph] * scale;
+		}
+	}
+
+	/**
+	 * Libère les textures des pages de la font
+	 */
+	public void dispose(){
+		for(int i= 0; i < pages.length; i++){
+			pages[i].dispose();
+		}
+	}
+}
\ No newline at end of file
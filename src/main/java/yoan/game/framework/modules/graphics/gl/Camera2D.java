@@ -6,6 +6,9 @@ import yoan.game.framework.util.math.Vector2;
 
 /**
  * Caméra openGL ES en 2D
+ * La projection et la transformation inverse (écran vers jeu) sont mises en cache
+ * et ne sont recalculées que si la position, le zoom, la rotation ou la taille de l'écran changent
+ * Le cache est modifié par les accesseurs : une caméra ne doit être utilisée que par un seul thread (cf. PipelinedScreen)
  * @author yoan
  */
 public class Camera2D {
@@ -13,12 +16,28 @@ public class Camera2D {
 	public final Vector2 position;
 	/** Niveau de zoom [0-1] : in, [1,n] : out */
 	public float zoom;
+	/** Rotation de la caméra en degré, dans le sens trigonométrique */
+	public float rotation;
 	/** Largeur du frustum */
 	public final float frustumWidth;
 	/** Hauteur du frustum */
 	public final float frustumHeight;
 	/** Accès Android à OpenGL ES 1.0 */
 	private final GLGraphics glGraphics;
+	/** Matrice de projection en cache, par colonne */
+	private final float[] projection = new float[16];
+	/** Transformation écran vers jeu en cache : x = [0] * sx + [1] * sy + [2], y = [3] * sx + [4] * sy + [5] */
+	private final float[] inverse = new float[6];
+	/** Etat de la caméra lors du dernier calcul du cache */
+	private float cachedX, cachedY, cachedZoom, cachedRotation;
+	/** Taille de l'écran lors du dernier calcul du cache */
+	private int cachedWidth, cachedHeight;
+	/** Indique si le cache n'a jamais été calculé */
+	private boolean cacheEmpty = true;
+	/** Indique si le cache a été recalculé depuis le dernier chargement du viewport et de la projection dans GL */
+	private boolean glDirty = true;
+	/** Limites de la zone visible, boîte englobante en cas de rotation */
+	private float visibleLeft, visibleRight, visibleBottom, visibleTop;
 
 	/**
 	 * Constructeur avec paramètres
@@ -33,36 +52,167 @@ public class Camera2D {
 		//on centre la caméra sur le centre du frustum
 		this.position = new Vector2(frustumWidth / 2, frustumHeight / 2);
 		this.zoom = 1.0f;
+		this.projection[10] = 1;
+		this.projection[15] = 1;
+	}
+
+	/**
+	 * Recalcule la projection, la transformation inverse et la zone visible si la caméra ou l'écran ont changé
+	 */
+	private void update() {
+		int width = glGraphics.getWidth();
+		int height = glGraphics.getHeight();
+		if(!cacheEmpty && position.x == cachedX && position.y == cachedY && zoom == cachedZoom && rotation == cachedRotation
+				&& width == cachedWidth && height == cachedHeight) return;
+		cacheEmpty = false;
+		cachedX = position.x;
+		cachedY = position.y;
+		cachedZoom = zoom;
+		cachedRotation = rotation;
+		cachedWidth = width;
+		cachedHeight = height;
+
+		float halfWidth = frustumWidth * zoom / 2;
+		float halfHeight = frustumHeight * zoom / 2;
+		//le cache n'est recalculé que lors d'un changement : la précision de Math est préférée à FastTrig
+		double radians = Math.toRadians(rotation);
+		float cos = (float) Math.cos(radians);
+		float sin = (float) Math.sin(radians);
+
+		//projection = glOrthof(-halfWidth, halfWidth, -halfHeight, halfHeight, 1, -1) * rotation(-angle) * translation(-position)
+		float[] m = projection;
+		m[0] = cos / halfWidth;
+		m[1] = -sin / halfHeight;
+		m[4] = sin / halfWidth;
+		m[5] = cos / halfHeight;
+		m[12] = -(m[0] * cachedX + m[4] * cachedY);
+		m[13] = -(m[1] * cachedX + m[5] * cachedY);
+
+		//écran vers jeu : mise à l'échelle (axe Y de l'écran inversé), centrage, rotation puis translation
+		float scaleX = width == 0 ? 0 : 2 * halfWidth / width;
+		float scaleY = height == 0 ? 0 : -2 * halfHeight / height;
+		inverse[0] = cos * scaleX;
+		inverse[1] = -sin * scaleY;
+		inverse[2] = cachedX - cos * halfWidth - sin * halfHeight;
+		inverse[3] = sin * scaleX;
+		inverse[4] = cos * scaleY;
+		inverse[5] = cachedY - sin * halfWidth + cos * halfHeight;
+
+		//boîte englobante de la zone visible tournée
+		float extentX = Math.abs(cos) * halfWidth + Math.abs(sin) * halfHeight;
+		float extentY = Math.abs(sin) * halfWidth + Math.abs(cos) * halfHeight;
+		visibleLeft = cachedX - extentX;
+		visibleRight = cachedX + extentX;
+		visibleBottom = cachedY - extentY;
+		visibleTop = cachedY + extentY;
+		//le recalcul peut venir d'un autre appelant (touchToWorld, culling...) : le chargement dans GL reste à faire
+		glDirty = true;
 	}
 
 	/**
 	 * Modifie le viewport et la projection en fonction de la caméra
 	 * et remet la matrice courante sur GL_MODELVIEW
+	 * Le viewport et la projection ne sont rechargés que si la caméra a changé
+	 * ou qu'une autre caméra a été utilisée depuis le dernier appel
 	 */
 	public void setViewportAndMatrices() {
 		GL10 gl = glGraphics.getGL();
-		gl.glViewport(0, 0, glGraphics.getWidth(), glGraphics.getHeight());
-		gl.glMatrixMode(GL10.GL_PROJECTION);
-		gl.glLoadIdentity();
-		//placement au centre de la caméra, et taille de la projection en fonction du zoom
-		gl.glOrthof(position.x - frustumWidth * zoom / 2,
-					position.x + frustumWidth * zoom / 2,
-					position.y - frustumHeight * zoom / 2,
-					position.y + frustumHeight * zoom / 2,
-					1, -1);
-		gl.glMatrixMode(GL10.GL_MODELVIEW);
+		update();
+		if(glDirty || glGraphics.currentCamera != this) {
+			gl.glViewport(0, 0, cachedWidth, cachedHeight);
+			gl.glMatrixMode(GL10.GL_PROJECTION);
+			gl.glLoadMatrixf(projection, 0);
+			gl.glMatrixMode(GL10.GL_MODELVIEW);
+			glGraphics.currentCamera = this;
+			glDirty = false;
+		}
+		//la matrice GL_MODELVIEW est toujours remise à zéro, le code de dessin peut l'avoir modifiée
 		gl.glLoadIdentity();
 	}
-	
+
+	/**
+	 * Force le rechargement du viewport et de la projection au prochain setViewportAndMatrices
+	 * A appeler après avoir modifié le viewport ou la projection sans passer par une caméra
+	 */
+	public void invalidate() {
+		glGraphics.currentCamera = null;
+	}
+
+	/**
+	 * Donne la limite gauche de la zone visible du jeu
+	 * @return abcisse du bord gauche de l'écran en coordonnées du jeu
+	 */
+	public float getVisibleLeft() {
+		update();
+		return visibleLeft;
+	}
+
+	/**
+	 * Donne la limite droite de la zone visible du jeu
+	 * @return abcisse du bord droit de l'écran en coordonnées du jeu
+	 */
+	public float getVisibleRight() {
+		update();
+		return visibleRight;
+	}
+
+	/**
+	 * Donne la limite basse de la zone visible du jeu
+	 * @return ordonnée du bord bas de l'écran en coordonnées du jeu
+	 */
+	public float getVisibleBottom() {
+		update();
+		return visibleBottom;
+	}
+
+	/**
+	 * Donne la limite haute de la zone visible du jeu
+	 * @return ordonnée du bord haut de l'écran en coordonnées du jeu
+	 */
+	public float getVisibleTop() {
+		update();
+		return visibleTop;
+	}
+
+	/**
+	 * Donne la transformation des coordonnées écran en coordonnées du jeu
+	 * x = [0] * sx + [1] * sy + [2], y = [3] * sx + [4] * sy + [5]
+	 * @return les 6 coefficients de la transformation, à ne pas modifier
+	 */
+	public float[] getInverseTransform() {
+		update();
+		return inverse;
+	}
+
 	/**
 	 * Modifie les coordonnées d'un vecteur correspondant à un point sur l'écran
 	 * en coordonnées dans le jeu
 	 * @param touch : coordonnées écran à convertir en coordonnées du jeu
 	 */
 	public void touchToWorld(Vector2 touch) {
-		touch.x = (touch.x / (float) glGraphics.getWidth()) * frustumWidth * zoom;
-		//l'axe Y de l'écran est inversé
-		touch.y = (1 - touch.y / (float) glGraphics.getHeight()) * frustumHeight * zoom;
-		touch.add(position).sub(frustumWidth * zoom / 2, frustumHeight * zoom / 2);
+		update();
+		float[] t = inverse;
+		float x = touch.x;
+		float y = touch.y;
+		touch.x = t[0] * x + t[1] * y + t[2];
+		touch.y = t[3] * x + t[4] * y + t[5];
+	}
+
+	/**
+	 * Convertit en une seule passe des points de l'écran en coordonnées dans le jeu
+	 * @param xy : coordonnées écran x0, y0, x1, y1... remplacées par les coordonnées du jeu
+	 * @param count : nombre de points à convertir
+	 */
+	public void touchToWorld(float[] xy, int count) {
+		update();
+		float a = inverse[0], b = inverse[1], c = inverse[2];
+		float d = inverse[3], e = inverse[4], f = inverse[5];
+		int length = count * 2;
+		for(int i = 0; i < length; i += 2) {
+			float x = xy[i];
+			float y = xy[i + 1];
+			xy[i] = a * x + b * y + c;
+			xy[i + 1] = d * x + e * y + f;
+		}
 	}
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package yoan.game.framework.modules.graphics.gl;
 
+import yoan.game.framework.util.text.TextBuilder;
+
 /**
  * Gestion d'une font via openGL ES
  * @author yoan
@@ -13,6 +15,8 @@ public class Font {
     public final int glyphHeight;
     /** Tableau comprenant la texture de chacune des glyphes (commence au  32ème char ASCII)*/
     public final TextureRegion[] glyphs = new TextureRegion[96];   
+    /** Texte réutilisé pour dessiner les nombres sans allocation */
+    final TextBuilder numberText = new TextBuilder(24);
     
     /**
      * Constructeur paramétré
@@ -43,11 +47,11 @@ public class Font {
     /**
      * Dessine un texte avec la font
      * @param batcher : le batcher de sprite pour l'affichage
-     * @param text : le texte à afficher
+     * @param text : le texte à afficher, une String ou un TextBuilder réutilisé pour éviter les allocations
      * @param x : abcisse du centre du premier char
      * @param y : ordonnée du centre du premier char
      */
-    public void drawText(SpriteBatcher batcher, String text, float x, float y) {
+    public void drawText(SpriteBatcher batcher, CharSequence text, float x, float y) {
         int len = text.length();
         //on dessine chacune des glyphes sur une seule ligne
         for(int i = 0; i < len; i++) {
@@ -61,4 +65,38 @@ public class Font {
             x += glyphWidth;
         }
     }
+    
+    /**
+     * Dessine un entier avec la font, sans allocation
+     * @param batcher : le batcher de sprite pour l'affichage
+     * @param value : l'entier à afficher
+     * @param x : abcisse du centre du premier char
+     * @param y : ordonnée du centre du premier char
+     */
+    public void drawText(SpriteBatcher batcher, int value, float x, float y) {
+        drawText(batcher, numberText.clear().append(value), x, y);
+    }
+    
+    /**
+     * Dessine un entier long avec la font, sans allocation
+     * @param batcher : le batcher de sprite pour l'affichage
+     * @param value : l'entier à afficher
+     * @param x : abcisse du centre du premier char
+     * @param y : ordonnée du centre du premier char
+     */
+    public void drawText(SpriteBatcher batcher, long value, float x, float y) {
+        drawText(batcher, numberText.clear().append(value), x, y);
+    }
+    
+    /**
+     * Dessine un nombre à virgule avec un nombre fixe de décimales, sans allocation
+     * @param batcher : le batcher de sprite pour l'affichage
+     * @param value : le nombre à afficher, arrondi au plus proche
+     * @param decimals : nombre de décimales [0-TextBuilder.MAX_DECIMALS]
+     * @param x : abcisse du centre du premier char
+     * @param y : ordonnée du centre du premier char
+     */
+    public void drawText(SpriteBatcher batcher, float value, int decimals, float x, float y) {
+        drawText(batcher, numberText.clear().append(value, decimals), x, y);
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package yoan.game.framework.modules.graphics.gl;
 
 import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
 
 import android.opengl.GLSurfaceView;
 
@@ -13,6 +14,18 @@ public class GLGraphics {
 	GLSurfaceView glView;
 	/** Interface vers les fonctions C de openGL ES 1.0 */
 	private GL10 gl;
+	/** Indique si le contexte courant supporte réellement OpenGL ES 1.1 */
+	private boolean gl11;
+	/** Numéro du contexte OpenGL courant, incrémenté à chaque nouveau contexte */
+	int generation;
+	/** Ressources GPU à recréer après une perte du contexte */
+	final GLResourceRegistry resources= new GLResourceRegistry();
+	/** Nombre de textures chargées avec une texture d'alpha séparée */
+	int alphaTextureCount;
+	/** Texture d'alpha actuellement liée à la seconde unité de texture, 0 si l'unité est désactivée */
+	int boundAlphaTextureId;
+	/** Caméra dont le viewport et la projection sont actuellement chargés, null s'ils sont inconnus */
+	Camera2D currentCamera;
 
 	/**
 	 * Constructeur à partir de la GLView
@@ -36,6 +49,72 @@ public class GLGraphics {
 	 */
 	public void setGL(GL10 gl){
 		this.gl= gl;
+		//l'implémentation Android de GL10 implémente toujours GL11, on vérifie donc aussi la version du driver
+		this.gl11= gl instanceof GL11 && !gl.glGetString(GL10.GL_VERSION).contains("1.0");
+		//nouveau contexte : la seconde unité de texture est désactivée
+		this.boundAlphaTextureId= 0;
+		this.currentCamera= null;
+		this.generation++;
+	}
+
+	/**
+	 * Donne le numéro du contexte OpenGL courant
+	 * Une ressource créée avec un numéro différent n'existe plus dans le GPU
+	 * @return numéro du contexte
+	 */
+	public int getGeneration(){
+		return generation;
+	}
+
+	/**
+	 * Accès au registre des ressources GPU
+	 * @return registre des ressources
+	 */
+	public GLResourceRegistry getResources(){
+		return resources;
+	}
+
+	/**
+	 * Indique si des textures utilisent une texture d'alpha séparée
+	 * Les vertices doivent alors aussi fournir leurs coordonnées de texture à la seconde unité de texture
+	 * @return true si au moins une texture a une texture d'alpha
+	 */
+	public boolean hasAlphaTextures(){
+		return alphaTextureCount > 0;
+	}
+
+	/**
+	 * Lie une texture d'alpha à la seconde unité de texture
+	 * En mode GL_MODULATE une texture GL_ALPHA ne modifie que l'alpha du fragment, la couleur vient de la première unité
+	 * @param alphaTextureId : ID de la texture d'alpha, 0 pour désactiver la seconde unité
+	 */
+	void bindAlphaTexture(int alphaTextureId){
+		if(alphaTextureId == boundAlphaTextureId) return;
+		gl.glActiveTexture(GL10.GL_TEXTURE1);
+		if(alphaTextureId == 0){
+			gl.glDisable(GL10.GL_TEXTURE_2D);
+		}else{
+			if(boundAlphaTextureId == 0) gl.glEnable(GL10.GL_TEXTURE_2D);
+			gl.glBindTexture(GL10.GL_TEXTURE_2D, alphaTextureId);
+		}
+		gl.glActiveTexture(GL10.GL_TEXTURE0);
+		boundAlphaTextureId= alphaTextureId;
+	}
+
+	/**
+	 * Indique si les fonctions d'OpenGL ES 1.1 (VBO, ...) sont disponibles
+	 * @return true si OpenGL ES 1.1 est supporté
+	 */
+	public boolean isGL11(){
+		return gl11;
+	}
+
+	/**
+	 * Récupère l'instance de GL11 si elle est supportée
+	 * @return GL11 ou null si OpenGL ES 1.1 n'est pas supporté
+	 */
+	public GL11 getGL11(){
+		return gl11 ? (GL11) gl : null;
 	}
 
 	/**
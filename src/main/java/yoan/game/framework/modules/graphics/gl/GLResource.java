@@ -0,0 +1,25 @@
+package yoan.game.framework.modules.graphics.gl;
+
+/**
+ * Ressource stockée dans la mémoire du GPU, à recréer après une perte du contexte OpenGL
+ * @author yoan
+ */
+public interface GLResource {
+	/**
+	 * Prépare les données de la ressource sans appel OpenGL (décodage d'image...)
+	 * Appelé par un thread de fond, en parallèle des autres ressources
+	 */
+	public void prepareRebuild();
+
+	/**
+	 * Recrée la ressource dans le nouveau contexte OpenGL à partir des données préparées
+	 * Appelé par le thread de rendu
+	 */
+	public void rebuild();
+
+	/**
+	 * Libère les données préparées par prepareRebuild quand la reconstruction est abandonnée
+	 * Appelé par le thread de rendu, à la place de rebuild
+	 */
+	public void discardRebuild();
+}
\ No newline at end of file
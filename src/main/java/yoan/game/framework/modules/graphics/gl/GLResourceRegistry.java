@@ -0,0 +1,137 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Registre des ressources GPU (textures, VBO...) à recréer après une perte du contexte OpenGL
+ * La préparation des ressources (décodage des images) est faite en parallèle par des threads de fond,
+ * le thread de rendu envoie chaque ressource au GPU dès qu'elle est prête
+ * Le registre garde une référence forte sur chaque ressource jusqu'à son retrait : une ressource enregistrée
+ * n'est jamais collectée par le garbage collector, son dispose() (qui la retire) doit donc toujours être appelé
+ * @author yoan
+ */
+public class GLResourceRegistry {
+	/** Ressources enregistrées */
+	final List<GLResource> resources= new ArrayList<GLResource>();
+	/** Listeners prévenus au début de chaque reconstruction */
+	final List<Runnable> listeners= new ArrayList<Runnable>();
+
+	/**
+	 * Enregistre une ressource pour qu'elle soit recréée automatiquement
+	 * La ressource et ce qu'elle référence (image d'une texture...) restent en mémoire jusqu'à unregister
+	 * @param resource : ressource GPU
+	 */
+	public void register(GLResource resource){
+		resources.add(resource);
+	}
+
+	/**
+	 * Retire une ressource du registre, à la libération de la ressource
+	 * @param resource : ressource GPU
+	 */
+	public void unregister(GLResource resource){
+		resources.remove(resource);
+	}
+
+	/**
+	 * Ajoute un listener appelé par le thread de rendu au début de chaque reconstruction, avant la préparation des ressources
+	 * @param listener : listener à ajouter
+	 */
+	public void addRebuildListener(Runnable listener){
+		listeners.add(listener);
+	}
+
+	/**
+	 * Retire un listener de reconstruction
+	 * @param listener : listener à retirer
+	 */
+	public void removeRebuildListener(Runnable listener){
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Donne le nombre de ressources enregistrées
+	 * @return nombre de ressources
+	 */
+	public int size(){
+		return resources.size();
+	}
+
+	/**
+	 * Recrée toutes les ressources enregistrées dans le nouveau contexte OpenGL
+	 * Doit être appelé par le thread de rendu, GLGame le fait à chaque création de la surface
+	 * Les listeners sont prévenus avant la préparation, ils peuvent libérer les ressources devenues inutiles
+	 */
+	public void rebuild(){
+		for(int i= 0; i < listeners.size(); i++){
+			listeners.get(i).run();
+		}
+		int count= resources.size();
+		if(count == 0) return;
+		int threads= Math.min(count, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+		ExecutorService executor= Executors.newFixedThreadPool(threads);
+		ExecutorCompletionService<GLResource> completion= new ExecutorCompletionService<GLResource>(executor);
+		//la liste peut changer pendant les appels à rebuild, on travaille sur une copie
+		GLResource[] pending= resources.toArray(new GLResource[count]);
+		int submitted= 0;
+		int inFlight= 0;
+		boolean done= false;
+		try{
+			for(int rebuilt= 0; rebuilt < count; rebuilt++){
+				//préparation en parallèle, limitée au nombre de threads pour borner la mémoire des images décodées en attente
+				while(submitted < count && inFlight < threads){
+					final GLResource resource= pending[submitted++];
+					completion.submit(new Callable<GLResource>(){
+						public GLResource call(){
+							resource.prepareRebuild();
+							return resource;
+						}
+					});
+					inFlight++;
+				}
+				//envoi vers le GPU dans l'ordre de fin de préparation
+				Future<GLResource> prepared= completion.take();
+				inFlight--;
+				prepared.get().rebuild();
+			}
+			done= true;
+		}catch(ExecutionException e){
+			throw new RuntimeException("Couldn't rebuild GL resources", e.getCause());
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while rebuilding GL resources", e);
+		}finally{
+			executor.shutdown();
+			//en cas d'échec, les données déjà préparées ne seront pas envoyées au GPU et sont libérées
+			if(!done) discardPrepared(completion, inFlight);
+		}
+	}
+
+	/**
+	 * Attend la fin des préparations en cours après un échec et libère leurs données
+	 * @param completion : service des préparations
+	 * @param inFlight : nombre de préparations soumises et pas encore récupérées
+	 */
+	private static void discardPrepared(ExecutorCompletionService<GLResource> completion, int inFlight){
+		//après une interruption on ne peut plus attendre : les données sont laissées au ramasse-miettes
+		if(Thread.currentThread().isInterrupted()) return;
+		try{
+			for(; inFlight > 0; inFlight--){
+				try{
+					completion.take().get().discardRebuild();
+				}catch(ExecutionException e){
+					//préparation en échec, rien à libérer
+				}
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+}
\ No newline at end of file
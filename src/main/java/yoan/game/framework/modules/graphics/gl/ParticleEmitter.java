@@ -0,0 +1,414 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import yoan.game.framework.modules.fileio.FileIO;
+import yoan.game.framework.util.math.FastTrig;
+
+/**
+ * Emetteur de particules dessinées par le SpriteBatcher
+ * L'état des particules est rangé dans des tableaux parallèles de types primitifs alloués à la construction :
+ * une particule morte est remplacée par la dernière particule vivante, aucun objet n'est créé pendant le jeu
+ * La configuration peut être lue depuis un fichier de propriétés (cf. le constructeur à partir d'un fichier)
+ * @author yoan
+ */
+public class ParticleEmitter {
+	/** Nombre de particules maximum */
+	final int maxParticles;
+	/** Région de texture des particules */
+	TextureRegion region;
+	/** Nombre de particules vivantes */
+	int numParticles;
+	/** Abcisse de chaque particule */
+	final float[] xs;
+	/** Ordonnée de chaque particule */
+	final float[] ys;
+	/** Vitesse horizontale de chaque particule */
+	final float[] velocitiesX;
+	/** Vitesse verticale de chaque particule */
+	final float[] velocitiesY;
+	/** Temps de vie écoulé de chaque particule, en fraction de sa durée de vie [0-1] */
+	final float[] ages;
+	/** Inverse de la durée de vie de chaque particule */
+	final float[] inverseLifes;
+	/** Angle de chaque particule en degré */
+	final float[] rotations;
+	/** Vitesse de rotation de chaque particule en degré par unité de temps */
+	final float[] rotationSpeeds;
+	/** Facteur de taille propre à chaque particule */
+	final float[] sizes;
+
+	/** Abcisse de l'émetteur */
+	public float x;
+	/** Ordonnée de l'émetteur */
+	public float y;
+	/** Nombre de particules émises par unité de temps */
+	public float emissionRate= 50;
+	/** Durée d'émission, 0 pour une émission continue */
+	public float duration;
+	/** Demi-largeur de la zone d'apparition des particules */
+	public float spreadX;
+	/** Demi-hauteur de la zone d'apparition des particules */
+	public float spreadY;
+	/** Durée de vie minimum d'une particule */
+	public float lifeMin= 1;
+	/** Durée de vie maximum d'une particule */
+	public float lifeMax= 1;
+	/** Vitesse initiale minimum d'une particule */
+	public float speedMin;
+	/** Vitesse initiale maximum d'une particule */
+	public float speedMax;
+	/** Direction minimum de la vitesse initiale en degré */
+	public float angleMin;
+	/** Direction maximum de la vitesse initiale en degré */
+	public float angleMax= 360;
+	/** Angle initial minimum d'une particule en degré */
+	public float rotationMin;
+	/** Angle initial maximum d'une particule en degré */
+	public float rotationMax;
+	/** Vitesse de rotation minimum en degré par unité de temps */
+	public float rotationSpeedMin;
+	/** Vitesse de rotation maximum en degré par unité de temps */
+	public float rotationSpeedMax;
+	/** Facteur de taille minimum d'une particule */
+	public float sizeMin= 1;
+	/** Facteur de taille maximum d'une particule */
+	public float sizeMax= 1;
+	/** Largeur d'une particule de taille 1 */
+	public float width= 1;
+	/** Hauteur d'une particule de taille 1 */
+	public float height= 1;
+	/** Echelle d'une particule à sa naissance */
+	public float scaleStart= 1;
+	/** Echelle d'une particule à sa mort */
+	public float scaleEnd= 1;
+	/** Accélération horizontale des particules */
+	public float gravityX;
+	/** Accélération verticale des particules */
+	public float gravityY;
+	/** Couleur d'une particule à sa naissance : rouge, vert, bleu, alpha [0-1] */
+	public final float[] colorStart= {1, 1, 1, 1};
+	/** Couleur d'une particule à sa mort : rouge, vert, bleu, alpha [0-1] */
+	public final float[] colorEnd= {1, 1, 1, 1};
+
+	/** Indique si l'émetteur crée de nouvelles particules */
+	boolean emitting= true;
+	/** Temps écoulé depuis le début de l'émission */
+	float emissionTime;
+	/** Fraction de particule restant à émettre */
+	float emissionAccumulator;
+	/** Etat du générateur pseudo-aléatoire */
+	int seed= (int) System.nanoTime() | 1;
+	/** Table trigonométrique pour la direction des particules */
+	FastTrig trig= FastTrig.DEFAULT;
+
+	/**
+	 * Constructeur avec paramètres, la configuration est celle par défaut des champs publics
+	 * @param maxParticles : nombre de particules maximum
+	 * @param region : région de texture des particules
+	 */
+	public ParticleEmitter(int maxParticles, TextureRegion region){
+		if(maxParticles <= 0) throw new IllegalArgumentException("Max particles must be strictly positive");
+		this.maxParticles= maxParticles;
+		this.region= region;
+		this.xs= new float[maxParticles];
+		this.ys= new float[maxParticles];
+		this.velocitiesX= new float[maxParticles];
+		this.velocitiesY= new float[maxParticles];
+		this.ages= new float[maxParticles];
+		this.inverseLifes= new float[maxParticles];
+		this.rotations= new float[maxParticles];
+		this.rotationSpeeds= new float[maxParticles];
+		this.sizes= new float[maxParticles];
+	}
+
+	/**
+	 * Constructeur à partir d'un fichier de propriétés
+	 * Clés reconnues : maxParticles, emissionRate, duration, spreadX, spreadY, lifeMin, lifeMax, speedMin, speedMax,
+	 * angleMin, angleMax, rotationMin, rotationMax, rotationSpeedMin, rotationSpeedMax, sizeMin, sizeMax,
+	 * width, height, scaleStart, scaleEnd, gravityX, gravityY, colorStart et colorEnd (r,g,b,a)
+	 * Les clés absentes gardent leur valeur par défaut
+	 * @param fileIO : gestionnaire de fichier
+	 * @param fileName : nom du fichier de configuration
+	 * @param region : région de texture des particules
+	 */
+	public ParticleEmitter(FileIO fileIO, String fileName, TextureRegion region){
+		this(readProperties(fileIO, fileName), region);
+	}
+
+	/**
+	 * Constructeur à partir de propriétés déjà lues
+	 * @param properties : configuration de l'émetteur
+	 * @param region : région de texture des particules
+	 */
+	public ParticleEmitter(Properties properties, TextureRegion region){
+		this(getInt(properties, "maxParticles", 100), region);
+		emissionRate= getFloat(properties, "emissionRate", emissionRate);
+		duration= getFloat(properties, "duration", duration);
+		spreadX= getFloat(properties, "spreadX", spreadX);
+		spreadY= getFloat(properties, "spreadY", spreadY);
+		lifeMin= getFloat(properties, "lifeMin", lifeMin);
+		lifeMax= getFloat(properties, "lifeMax", lifeMax);
+		//l'inverse de la durée de vie est gardé pour chaque particule
+		if(lifeMin <= 0 || lifeMax <= 0) throw new IllegalArgumentException("Particle life must be strictly positive (lifeMin=" + lifeMin + ", lifeMax=" + lifeMax + ")");
+		speedMin= getFloat(properties, "speedMin", speedMin);
+		speedMax= getFloat(properties, "speedMax", speedMax);
+		angleMin= getFloat(properties, "angleMin", angleMin);
+		angleMax= getFloat(properties, "angleMax", angleMax);
+		rotationMin= getFloat(properties, "rotationMin", rotationMin);
+		rotationMax= getFloat(properties, "rotationMax", rotationMax);
+		rotationSpeedMin= getFloat(properties, "rotationSpeedMin", rotationSpeedMin);
+		rotationSpeedMax= getFloat(properties, "rotationSpeedMax", rotationSpeedMax);
+		sizeMin= getFloat(properties, "sizeMin", sizeMin);
+		sizeMax= getFloat(properties, "sizeMax", sizeMax);
+		width= getFloat(properties, "width", width);
+		height= getFloat(properties, "height", height);
+		scaleStart= getFloat(properties, "scaleStart", scaleStart);
+		scaleEnd= getFloat(properties, "scaleEnd", scaleEnd);
+		gravityX= getFloat(properties, "gravityX", gravityX);
+		gravityY= getFloat(properties, "gravityY", gravityY);
+		getColor(properties, "colorStart", colorStart);
+		getColor(properties, "colorEnd", colorEnd);
+	}
+
+	/**
+	 * Lit un fichier de propriétés
+	 * @param fileIO : gestionnaire de fichier
+	 * @param fileName : nom du fichier
+	 * @return propriétés lues
+	 */
+	private static Properties readProperties(FileIO fileIO, String fileName){
+		InputStream in= null;
+		try{
+			in= fileIO.readAsset(fileName);
+			Properties properties= new Properties();
+			properties.load(in);
+			return properties;
+		}catch(IOException e){
+			throw new RuntimeException("Couldn't load particle emitter '" + fileName + "'", e);
+		}finally{
+			if(in != null) try{
+				in.close();
+			}catch(IOException e){}
+		}
+	}
+
+	/**
+	 * Donne la valeur entière d'une propriété
+	 * @param properties : configuration
+	 * @param key : nom de la propriété
+	 * @param defaultValue : valeur si la propriété est absente
+	 * @return valeur de la propriété
+	 */
+	private static int getInt(Properties properties, String key, int defaultValue){
+		String value= properties.getProperty(key);
+		return value == null ? defaultValue : Integer.parseInt(value.trim());
+	}
+
+	/**
+	 * Donne la valeur décimale d'une propriété
+	 * @param properties : configuration
+	 * @param key : nom de la propriété
+	 * @param defaultValue : valeur si la propriété est absente
+	 * @return valeur de la propriété
+	 */
+	private static float getFloat(Properties properties, String key, float defaultValue){
+		String value= properties.getProperty(key);
+		return value == null ? defaultValue : Float.parseFloat(value.trim());
+	}
+
+	/**
+	 * Lit une couleur "r,g,b,a" d'une propriété
+	 * @param properties : configuration
+	 * @param key : nom de la propriété
+	 * @param color : reçoit les composantes, inchangé si la propriété est absente
+	 */
+	private static void getColor(Properties properties, String key, float[] color){
+		String value= properties.getProperty(key);
+		if(value == null) return;
+		String[] components= value.split(",");
+		if(components.length != 4) throw new IllegalArgumentException("Color '" + key + "' must have 4 components");
+		for(int i= 0; i < 4; i++){
+			color[i]= Float.parseFloat(components[i].trim());
+		}
+	}
+
+	/**
+	 * Donne un nombre pseudo-aléatoire (xorshift), sans allocation ni synchronisation
+	 * @param min : borne inférieure
+	 * @param max : borne supérieure
+	 * @return nombre entre min et max
+	 */
+	float random(float min, float max){
+		int value= seed;
+		value^= value << 13;
+		value^= value >>> 17;
+		value^= value << 5;
+		seed= value;
+		//24 bits de poids fort ramenés dans [0-1[
+		return min + (max - min) * ((value >>> 8) * (1f / (1 << 24)));
+	}
+
+	/**
+	 * Relance l'émission depuis le début, les particules vivantes sont gardées
+	 */
+	public void start(){
+		emitting= true;
+		emissionTime= 0;
+		emissionAccumulator= 0;
+	}
+
+	/**
+	 * Arrête l'émission, les particules vivantes finissent leur vie
+	 */
+	public void stop(){
+		emitting= false;
+	}
+
+	/**
+	 * Supprime toutes les particules
+	 */
+	public void clear(){
+		numParticles= 0;
+	}
+
+	/**
+	 * Indique si l'effet est terminé
+	 * @return true si l'émission est arrêtée et qu'il ne reste aucune particule
+	 */
+	public boolean isComplete(){
+		return !emitting && numParticles == 0;
+	}
+
+	/**
+	 * Emet immédiatement des particules, dans la limite du nombre maximum
+	 * @param count : nombre de particules à émettre
+	 */
+	public void burst(int count){
+		for(int i= 0; i < count && numParticles < maxParticles; i++){
+			spawn();
+		}
+	}
+
+	/**
+	 * Crée une particule à la fin des tableaux
+	 */
+	private void spawn(){
+		int i= numParticles++;
+		xs[i]= x + random(-spreadX, spreadX);
+		ys[i]= y + random(-spreadY, spreadY);
+		float speed= random(speedMin, speedMax);
+		float angle= random(angleMin, angleMax);
+		velocitiesX[i]= speed * trig.cosDeg(angle);
+		velocitiesY[i]= speed * trig.sinDeg(angle);
+		ages[i]= 0;
+		inverseLifes[i]= 1 / random(lifeMin, lifeMax);
+		rotations[i]= random(rotationMin, rotationMax);
+		rotationSpeeds[i]= random(rotationSpeedMin, rotationSpeedMax);
+		sizes[i]= random(sizeMin, sizeMax);
+	}
+
+	/**
+	 * Emet les nouvelles particules et avance toutes les particules vivantes
+	 * @param deltaTime : temps écoulé depuis la dernière mise à jour
+	 */
+	public void update(float deltaTime){
+		if(emitting){
+			emissionTime+= deltaTime;
+			emissionAccumulator+= emissionRate * deltaTime;
+			int count= (int) emissionAccumulator;
+			emissionAccumulator-= count;
+			burst(count);
+			if(duration > 0 && emissionTime >= duration) emitting= false;
+		}
+		float gravityStepX= gravityX * deltaTime;
+		float gravityStepY= gravityY * deltaTime;
+		int i= 0;
+		while(i < numParticles){
+			float age= ages[i] + deltaTime * inverseLifes[i];
+			if(age >= 1){
+				//la dernière particule prend la place de la particule morte
+				int last= --numParticles;
+				xs[i]= xs[last];
+				ys[i]= ys[last];
+				velocitiesX[i]= velocitiesX[last];
+				velocitiesY[i]= velocitiesY[last];
+				ages[i]= ages[last];
+				inverseLifes[i]= inverseLifes[last];
+				rotations[i]= rotations[last];
+				rotationSpeeds[i]= rotationSpeeds[last];
+				sizes[i]= sizes[last];
+				//la particule déplacée n'a pas encore été mise à jour
+				continue;
+			}
+			ages[i]= age;
+			velocitiesX[i]+= gravityStepX;
+			velocitiesY[i]+= gravityStepY;
+			xs[i]+= velocitiesX[i] * deltaTime;
+			ys[i]+= velocitiesY[i] * deltaTime;
+			rotations[i]+= rotationSpeeds[i] * deltaTime;
+			i++;
+		}
+	}
+
+	/**
+	 * Dessine les particules vivantes
+	 * @param batcher : le batcher de sprite pour l'affichage
+	 */
+	public void draw(SpriteBatcher batcher){
+		float[] start= colorStart;
+		float[] end= colorEnd;
+		float redDelta= end[0] - start[0];
+		float greenDelta= end[1] - start[1];
+		float blueDelta= end[2] - start[2];
+		float alphaDelta= end[3] - start[3];
+		float scaleDelta= scaleEnd - scaleStart;
+		//la rotation n'est calculée que si la configuration en demande
+		boolean rotated= rotationMin != 0 || rotationMax != 0 || rotationSpeedMin != 0 || rotationSpeedMax != 0;
+		for(int i= 0; i < numParticles; i++){
+			float age= ages[i];
+			float scale= (scaleStart + scaleDelta * age) * sizes[i];
+			int color= Vertices.packColor(start[0] + redDelta * age, start[1] + greenDelta * age, start[2] + blueDelta * age, start[3] + alphaDelta * age);
+			if(rotated){
+				batcher.drawSprite(xs[i], ys[i], width * scale, height * scale, rotations[i], region, color);
+			}else{
+				batcher.drawSprite(xs[i], ys[i], width * scale, height * scale, region, color);
+			}
+		}
+	}
+
+	/**
+	 * Change la région de texture des particules
+	 * @param region : région de texture
+	 */
+	public void setRegion(TextureRegion region){
+		this.region= region;
+	}
+
+	/**
+	 * Choisit la table trigonométrique utilisée pour la direction des particules
+	 * @param trig : table à utiliser
+	 */
+	public void setTrig(FastTrig trig){
+		if(trig == null) throw new IllegalArgumentException("Trig table must not be null");
+		this.trig= trig;
+	}
+
+	/**
+	 * Donne le nombre de particules vivantes
+	 * @return nombre de particules
+	 */
+	public int getParticleCount(){
+		return numParticles;
+	}
+
+	/**
+	 * Donne le nombre de particules maximum
+	 * @return nombre de particules maximum
+	 */
+	public int getMaxParticles(){
+		return maxParticles;
+	}
+}
\ No newline at end of file
@@ -2,22 +2,69 @@ package yoan.game.framework.modules.graphics.gl;
 
 import javax.microedition.khronos.opengles.GL10;
 
-import yoan.game.framework.util.math.Vector2;
+import yoan.game.framework.util.math.FastTrig;
 
 /**
  * Batch d'affichage de sprite
  * Remplit un buffer de commande d'affichage de sprite et effectue un seul appel à openGL ES pour effectuer l'affichage
+ * Le batch est vidé automatiquement quand le buffer est plein ou que la texture des sprites change
  * @author yoan
  */
 public class SpriteBatcher {
-	/** Buffer de vertex des sprites */
-	final float[] verticesBuffer;
-	/** Indique la position du prochain espace libre dans le buffer */
-	int bufferIndex;
-	/** Contient la totalité des vertices et leurs indexs pour faire le rendu openGL à la fin d'un batch */
+	/** Nombre de mots de 32 bits par sprite : 4 vertices de 2 floats de position, 1 couleur empaquetée et 1 coordonnée de texture empaquetée */
+	public static final int SPRITE_SIZE= 4 * 4;
+	/** Teinte blanc opaque : la texture est affichée telle quelle */
+	public static final int WHITE= 0xFFFFFFFF;
+	/** Nombre de textures différentes utilisables dans un batch en mode différé */
+	public static final int MAX_DEFERRED_TEXTURES= 256;
+	/** Nombre de couches utilisables en mode différé */
+	public static final int MAX_LAYERS= 256;
+	/** Contient la totalité des vertices et leurs indexs pour faire le rendu openGL à la fin d'un batch, les sprites y sont écrits directement */
 	final Vertices vertices;
 	/** Nombre de sprite actuel dans le buffer */
 	int numSprites;
+	/** Nombre de sprite maximum dans le buffer */
+	final int maxSprites;
+	/** Teinte empaquetée des sprites dessinés sans couleur explicite */
+	int color= WHITE;
+	/** Texture utilisée par les sprites actuellement dans le buffer */
+	Texture currentTexture;
+	/** Nombre d'appels de rendu openGL ES depuis la dernière remise à zéro des compteurs */
+	public int renderCalls;
+	/** Nombre de changements de texture depuis la dernière remise à zéro des compteurs */
+	public int textureSwitches;
+	/** Indique si les sprites sont mis en file et triés à la fin du batch */
+	boolean deferred;
+	/** Couche des prochains sprites en mode différé */
+	int layer;
+	/** Vertices des commandes de sprite en attente en mode différé */
+	int[] commandVertices;
+	/** Clés de tri (couche et texture) des commandes en attente */
+	int[] commandKeys;
+	/** Indices des commandes triées */
+	int[] sortedCommands;
+	/** Tableau de travail du tri */
+	int[] sortBuffer;
+	/** Histogramme du tri par base */
+	final int[] radixCounts= new int[256];
+	/** Nombre de commandes en attente */
+	int numCommands;
+	/** Textures utilisées par les commandes en attente, indexées par leur emplacement dans la clé de tri */
+	final Texture[] batchTextures= new Texture[MAX_DEFERRED_TEXTURES];
+	/** Nombre de textures utilisées par les commandes en attente */
+	int numBatchTextures;
+	/** Emplacement de la dernière texture utilisée */
+	int lastTextureSlot;
+	/** Table trigonométrique pour les sprites avec rotation */
+	FastTrig trig= FastTrig.DEFAULT;
+	/** Caméra dont la zone visible sert à éliminer les sprites hors écran, null si pas d'élimination */
+	Camera2D cullingCamera;
+	/** Limites de la zone visible au début du batch */
+	float cullLeft, cullRight, cullBottom, cullTop;
+	/** Nombre de sprites éliminés car hors écran depuis la dernière remise à zéro des compteurs */
+	public int culledSprites;
+	/** Nombre de sprites envoyés au buffer depuis la dernière remise à zéro des compteurs */
+	public int submittedSprites;
 	
 	/**
 	 * Constructeur avec paramètres
@@ -25,12 +72,32 @@ public class SpriteBatcher {
 	 * @param maxSprites : Nombre de sprite maximum dans le buffer
 	 */
 	public SpriteBatcher(GLGraphics glGraphics, int maxSprites){
-		//4 floats par vertex et 4 vertices par sprite
-		this.verticesBuffer= new float[maxSprites * 4 * 4];
+		this(glGraphics, maxSprites, false);
+	}
+	
+	/**
+	 * Constructeur avec paramètres
+	 * @param glGraphics : Accès Android à OpenGL ES 1.0
+	 * @param maxSprites : Nombre de sprite maximum dans le buffer
+	 * @param useVBO : indique si les vertices sont envoyés au GPU via des VBO (si OpenGL ES 1.1 est supporté)
+	 */
+	public SpriteBatcher(GLGraphics glGraphics, int maxSprites, boolean useVBO){
+		this.maxSprites= maxSprites;
 		//4 vertices par sprite et 6 indices par sprite
-		this.vertices= new Vertices(glGraphics, maxSprites * 4, maxSprites * 6, false, true);
-		this.bufferIndex= 0;
+		//position en float, teinte en 4 unsigned byte et coordonnées de texture en short : 16 bytes par vertex
+		this.vertices= new Vertices(glGraphics, maxSprites * 4, maxSprites * 6, GL10.GL_FLOAT, GL10.GL_UNSIGNED_BYTE, GL10.GL_SHORT, useVBO);
 		this.numSprites= 0;
+		short[] indices= createQuadIndices(maxSprites);
+		vertices.setIndices(indices, 0, indices.length);
+		vertices.beginWrite();
+	}
+	
+	/**
+	 * Crée les indices permettant de dessiner des rectangles de 4 vertices avec 2 triangles
+	 * @param maxSprites : nombre de rectangles
+	 * @return les indices des vertices
+	 */
+	static short[] createQuadIndices(int maxSprites){
 		//on ordonne les indices pour faire des rectangles
 		short[] indices= new short[maxSprites * 6];
 		int len= indices.length;
@@ -44,7 +111,7 @@ public class SpriteBatcher {
 			indices[i + 4]= (short) (j + 3);
 			indices[i + 5]= (short) (j + 0);
 		}
-		vertices.setIndices(indices, 0, indices.length);
+		return indices;
 	}
 	
 	/**
@@ -54,12 +121,68 @@ public class SpriteBatcher {
 	public void beginBatch(Texture texture) {
 		//chargement de la texture
 		texture.bind();
+		currentTexture = texture;
+		numSprites = 0;
+		vertices.beginWrite();
+		updateCullingBounds();
+	}
+	
+	/**
+	 * Commence un nouveau batch, la texture est déterminée par le premier sprite dessiné
+	 */
+	public void beginBatch() {
+		currentTexture = null;
 		numSprites = 0;
-		bufferIndex = 0;
+		vertices.beginWrite();
+		updateCullingBounds();
 	}
 	
 	/**
-	 * Ajoute un sprite à dessiner
+	 * Vérifie que le sprite à ajouter peut aller dans le buffer courant, sinon on vide le buffer
+	 * @param texture : texture du sprite à ajouter
+	 */
+	private void checkFlush(Texture texture) {
+		if(texture != currentTexture) {
+			//les sprites déjà présents sont dessinés avec l'ancienne texture
+			flush();
+			texture.bind();
+			currentTexture = texture;
+			textureSwitches++;
+		} else if(numSprites == maxSprites) {
+			flush();
+		}
+	}
+	
+	/**
+	 * Choisit la teinte des sprites dessinés sans couleur explicite
+	 * Les couleurs étant portées par les vertices, la couleur courante openGL (glColor4f) n'est pas utilisée par le batcher
+	 * @param r : composante rouge [0-1]
+	 * @param g : composante verte [0-1]
+	 * @param b : composante bleue [0-1]
+	 * @param a : composante alpha [0-1]
+	 */
+	public void setColor(float r, float g, float b, float a){
+		this.color= Vertices.packColor(r, g, b, a);
+	}
+
+	/**
+	 * Choisit la teinte des sprites dessinés sans couleur explicite
+	 * @param color : teinte empaquetée via Vertices.packColor, WHITE par défaut
+	 */
+	public void setColor(int color){
+		this.color= color;
+	}
+
+	/**
+	 * Donne la teinte des sprites dessinés sans couleur explicite
+	 * @return teinte empaquetée
+	 */
+	public int getColor(){
+		return color;
+	}
+	
+	/**
+	 * Ajoute un sprite à dessiner avec la teinte du batcher
 	 * @param x : abcisse du centre du sprite
 	 * @param y : ordonnée du centre du sprite
 	 * @param width : largeur du sprite
@@ -67,9 +190,23 @@ public class SpriteBatcher {
 	 * @param region : région du texture atlas à utiliser
 	 */
 	public void drawSprite(float x, float y, float width, float height, TextureRegion region) {
+		drawSprite(x, y, width, height, region, color);
+	}
+	
+	/**
+	 * Ajoute un sprite teinté à dessiner
+	 * @param x : abcisse du centre du sprite
+	 * @param y : ordonnée du centre du sprite
+	 * @param width : largeur du sprite
+	 * @param height : hauteur du sprite
+	 * @param region : région du texture atlas à utiliser
+	 * @param color : teinte multipliée à la texture, empaquetée via Vertices.packColor
+	 */
+	public void drawSprite(float x, float y, float width, float height, TextureRegion region, int color) {
 		//pré-calcul
 		float halfWidth = width / 2;
 		float halfHeight = height / 2;
+		if(isCulled(x, y, halfWidth, halfHeight)) return;
 		//calcul du coin inférieur gauche
 		float x1 = x - halfWidth;
 		float y1 = y - halfHeight;
@@ -77,32 +214,11 @@ public class SpriteBatcher {
 		float x2 = x + halfWidth;
 		float y2 = y + halfHeight;
 		
-		//coin inférieur gauche
-		verticesBuffer[bufferIndex++] = x1;
-		verticesBuffer[bufferIndex++] = y1;
-		verticesBuffer[bufferIndex++] = region.u1;
-		verticesBuffer[bufferIndex++] = region.v2;
-		//coin inférieur droit
-		verticesBuffer[bufferIndex++] = x2;
-		verticesBuffer[bufferIndex++] = y1;
-		verticesBuffer[bufferIndex++] = region.u2;
-		verticesBuffer[bufferIndex++] = region.v2;
-		//coin supérieur droit
-		verticesBuffer[bufferIndex++] = x2;
-		verticesBuffer[bufferIndex++] = y2;
-		verticesBuffer[bufferIndex++] = region.u2;
-		verticesBuffer[bufferIndex++] = region.v1;
-		//coin supérieur gauche
-		verticesBuffer[bufferIndex++] = x1;
-		verticesBuffer[bufferIndex++] = y2;
-		verticesBuffer[bufferIndex++] = region.u1;
-		verticesBuffer[bufferIndex++] = region.v1;
-		
-		numSprites++;
+		addQuad(x1, y1, x2, y1, x2, y2, x1, y2, region, color);
 	}
 	
 	/**
-	 * Ajoute un sprite à dessiner avec une rotation
+	 * Ajoute un sprite à dessiner avec une rotation et la teinte du batcher
 	 * @param x : abcisse du centre du sprite
 	 * @param y : ordonnée du centre du sprite
 	 * @param width : largeur du sprite
@@ -111,68 +227,379 @@ public class SpriteBatcher {
 	 * @param region : région du texture atlas à utiliser
 	 */
 	public void drawSprite(float x, float y, float width, float height, float angle, TextureRegion region){
-		//pré-calcul
-		float halfWidth= width / 2;
-		float halfHeight= height / 2;
-		float rad= angle * Vector2.TO_RADIANS;
-		float cos= (float) Math.cos(rad);
-		float sin= (float) Math.sin(rad);
+		drawSprite(x, y, width, height, angle, region, color);
+	}
+	
+	/**
+	 * Ajoute un sprite teinté à dessiner avec une rotation
+	 * @param x : abcisse du centre du sprite
+	 * @param y : ordonnée du centre du sprite
+	 * @param width : largeur du sprite
+	 * @param height : hauteur du sprite
+	 * @param angle : angle de rotation en degré
+	 * @param region : région du texture atlas à utiliser
+	 * @param color : teinte multipliée à la texture, empaquetée via Vertices.packColor
+	 */
+	public void drawSprite(float x, float y, float width, float height, float angle, TextureRegion region, int color){
+		//rotation autour du centre du sprite
+		drawSprite(x, y, width / 2, height / 2, width, height, 1, 1, angle, region, color);
+	}
+	
+	/**
+	 * Ajoute un sprite teinté à dessiner avec une mise à l'échelle et une rotation autour d'une origine
+	 * Seuls le coin inférieur gauche et les deux côtés du sprite sont calculés par rotation, 
+	 * les autres coins s'en déduisent par addition
+	 * @param x : abcisse de l'origine du sprite
+	 * @param y : ordonnée de l'origine du sprite
+	 * @param originX : abcisse de l'origine par rapport au coin inférieur gauche du sprite
+	 * @param originY : ordonnée de l'origine par rapport au coin inférieur gauche du sprite
+	 * @param width : largeur du sprite
+	 * @param height : hauteur du sprite
+	 * @param scaleX : coefficient de mise à l'échelle sur la largeur
+	 * @param scaleY : coefficient de mise à l'échelle sur la hauteur
+	 * @param angle : angle de rotation en degré
+	 * @param region : région du texture atlas à utiliser
+	 * @param color : teinte multipliée à la texture, empaquetée via Vertices.packColor
+	 */
+	public void drawSprite(float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float angle, TextureRegion region, int color){
+		float scaledWidth= width * scaleX;
+		float scaledHeight= height * scaleY;
+		//position du coin inférieur gauche par rapport à l'origine
+		float left= -originX * scaleX;
+		float bottom= -originY * scaleY;
+		if(cullingCamera != null){
+			//rayon englobant pour toute rotation : |dx| + |dy| majore la distance du coin le plus éloigné de l'origine
+			float radius= Math.max(Math.abs(left), Math.abs(left + scaledWidth)) + Math.max(Math.abs(bottom), Math.abs(bottom + scaledHeight));
+			if(isCulled(x, y, radius, radius)) return;
+		}
+		//pré-calcul via la table trigonométrique
+		float cos= trig.cosDeg(angle);
+		float sin= trig.sinDeg(angle);
+		
+		//côté inférieur après rotation
+		float widthX= scaledWidth * cos;
+		float widthY= scaledWidth * sin;
+		//côté gauche après rotation
+		float heightX= -scaledHeight * sin;
+		float heightY= scaledHeight * cos;
 		
 		//calcul du coin inférieur gauche
-		float x1= -halfWidth * cos - (-halfHeight) * sin;
-		float y1= -halfWidth * sin + (-halfHeight) * cos;
+		float x1= x + left * cos - bottom * sin;
+		float y1= y + left * sin + bottom * cos;
 		//calcul du coin inférieur droit
-		float x2= halfWidth * cos - (-halfHeight) * sin;
-		float y2= halfWidth * sin + (-halfHeight) * cos;
+		float x2= x1 + widthX;
+		float y2= y1 + widthY;
 		//calcul du coin supérieur droit
-		float x3= halfWidth * cos - halfHeight * sin;
-		float y3= halfWidth * sin + halfHeight * cos;
+		float x3= x2 + heightX;
+		float y3= y2 + heightY;
 		//calcul du coin supérieur gauche
-		float x4= -halfWidth * cos - halfHeight * sin;
-		float y4= -halfWidth * sin + halfHeight * cos;
-		
-		//recentrage
-		x1+= x;
-		y1+= y;
-		x2+= x;
-		y2+= y;
-		x3+= x;
-		y3+= y;
-		x4+= x;
-		y4+= y;
+		float x4= x1 + heightX;
+		float y4= y1 + heightY;
 		
+		addQuad(x1, y1, x2, y2, x3, y3, x4, y4, region, color);
+	}
+	
+	/**
+	 * Choisit la table trigonométrique utilisée pour les sprites avec rotation
+	 * @param trig : table à utiliser, sa résolution détermine la précision des angles
+	 */
+	public void setTrig(FastTrig trig){
+		if(trig == null) throw new IllegalArgumentException("Trig table must not be null");
+		this.trig= trig;
+	}
+	
+	/**
+	 * Active l'élimination des sprites en dehors de la zone visible d'une caméra
+	 * La zone visible est relue à chaque début de batch
+	 * @param camera : caméra utilisée pour l'affichage, null pour désactiver l'élimination
+	 */
+	public void setCulling(Camera2D camera){
+		this.cullingCamera= camera;
+		updateCullingBounds();
+	}
+	
+	/**
+	 * Met à jour les limites de la zone visible à partir de la caméra
+	 */
+	private void updateCullingBounds(){
+		if(cullingCamera == null) return;
+		cullLeft= cullingCamera.getVisibleLeft();
+		cullRight= cullingCamera.getVisibleRight();
+		cullBottom= cullingCamera.getVisibleBottom();
+		cullTop= cullingCamera.getVisibleTop();
+	}
+	
+	/**
+	 * Indique si un sprite est entièrement hors de la zone visible, et le comptabilise le cas échéant
+	 * @param x : abcisse du centre de la boîte englobante
+	 * @param y : ordonnée du centre de la boîte englobante
+	 * @param halfWidth : demi largeur de la boîte englobante
+	 * @param halfHeight : demi hauteur de la boîte englobante
+	 * @return true si le sprite n'est pas à dessiner
+	 */
+	private boolean isCulled(float x, float y, float halfWidth, float halfHeight){
+		if(cullingCamera == null) return false;
+		if(x + halfWidth < cullLeft || x - halfWidth > cullRight || y + halfHeight < cullBottom || y - halfHeight > cullTop){
+			culledSprites++;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Ecrit les vertices d'un sprite directement dans le buffer natif, ou dans la file des commandes en mode différé
+	 * Les coins sont donnés dans l'ordre : inférieur gauche, inférieur droit, supérieur droit, supérieur gauche
+	 * @param x1 : abcisse du coin inférieur gauche
+	 * @param y1 : ordonnée du coin inférieur gauche
+	 * @param x2 : abcisse du coin inférieur droit
+	 * @param y2 : ordonnée du coin inférieur droit
+	 * @param x3 : abcisse du coin supérieur droit
+	 * @param y3 : ordonnée du coin supérieur droit
+	 * @param x4 : abcisse du coin supérieur gauche
+	 * @param y4 : ordonnée du coin supérieur gauche
+	 * @param region : région du texture atlas à utiliser
+	 * @param color : teinte empaquetée du sprite
+	 */
+	private void addQuad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4, TextureRegion region, int color){
+		submittedSprites++;
+		if(!deferred){
+			checkFlush(region.texture);
+			Vertices vertices= this.vertices;
+			//coin inférieur gauche
+			vertices.putVertex(x1, y1, color, region.packedU1V2);
+			//coin inférieur droit
+			vertices.putVertex(x2, y2, color, region.packedU2V2);
+			//coin supérieur droit
+			vertices.putVertex(x3, y3, color, region.packedU2V1);
+			//coin supérieur gauche
+			vertices.putVertex(x4, y4, color, region.packedU1V1);
+			numSprites++;
+			return;
+		}
+		//le sprite est mis en attente jusqu'au tri de fin de batch
+		int index= queueCommand(region.texture) * SPRITE_SIZE;
+		int[] buffer= commandVertices;
 		//coin inférieur gauche
-		verticesBuffer[bufferIndex++]= x1;
-		verticesBuffer[bufferIndex++]= y1;
-		verticesBuffer[bufferIndex++]= region.u1;
-		verticesBuffer[bufferIndex++]= region.v2;
+		buffer[index++]= Float.floatToRawIntBits(x1);
+		buffer[index++]= Float.floatToRawIntBits(y1);
+		buffer[index++]= color;
+		buffer[index++]= region.packedU1V2;
 		//coin inférieur droit
-		verticesBuffer[bufferIndex++]= x2;
-		verticesBuffer[bufferIndex++]= y2;
-		verticesBuffer[bufferIndex++]= region.u2;
-		verticesBuffer[bufferIndex++]= region.v2;
+		buffer[index++]= Float.floatToRawIntBits(x2);
+		buffer[index++]= Float.floatToRawIntBits(y2);
+		buffer[index++]= color;
+		buffer[index++]= region.packedU2V2;
 		//coin supérieur droit
-		verticesBuffer[bufferIndex++]= x3;
-		verticesBuffer[bufferIndex++]= y3;
-		verticesBuffer[bufferIndex++]= region.u2;
-		verticesBuffer[bufferIndex++]= region.v1;
+		buffer[index++]= Float.floatToRawIntBits(x3);
+		buffer[index++]= Float.floatToRawIntBits(y3);
+		buffer[index++]= color;
+		buffer[index++]= region.packedU2V1;
 		//coin supérieur gauche
-		verticesBuffer[bufferIndex++]= x4;
-		verticesBuffer[bufferIndex++]= y4;
-		verticesBuffer[bufferIndex++]= region.u1;
-		verticesBuffer[bufferIndex++]= region.v1;
+		buffer[index++]= Float.floatToRawIntBits(x4);
+		buffer[index++]= Float.floatToRawIntBits(y4);
+		buffer[index++]= color;
+		buffer[index]= region.packedU1V1;
+	}
+
+	/**
+	 * Ajoute des sprites dont les vertices sont déjà calculés, copiés tels quels dans le buffer ou la file du mode différé
+	 * Chaque sprite occupe SPRITE_SIZE mots : pour chaque coin (inférieur gauche, inférieur droit, supérieur droit, supérieur gauche)
+	 * l'abcisse et l'ordonnée en bits de float (Float.floatToRawIntBits), la couleur (cf. Vertices.packColor)
+	 * et les coordonnées de texture (cf. Vertices.packTexCoords)
+	 * Les sprites ne sont pas éliminés par le culling
+	 * @param quads : vertices des sprites
+	 * @param offset : indice du premier mot du premier sprite
+	 * @param count : nombre de sprites
+	 * @param texture : texture des sprites
+	 */
+	public void drawQuads(int[] quads, int offset, int count, Texture texture){
+		submittedSprites+= count;
+		if(deferred){
+			for(int i= 0; i < count; i++){
+				//la file peut être agrandie par queueCommand : commandVertices est relu après
+				int index= queueCommand(texture) * SPRITE_SIZE;
+				System.arraycopy(quads, offset + i * SPRITE_SIZE, commandVertices, index, SPRITE_SIZE);
+			}
+			return;
+		}
+		while(count > 0){
+			checkFlush(texture);
+			//on copie d'un bloc tout ce qui rentre dans le buffer
+			int copied= Math.min(count, maxSprites - numSprites);
+			vertices.putInts(quads, offset, copied * SPRITE_SIZE);
+			numSprites+= copied;
+			offset+= copied * SPRITE_SIZE;
+			count-= copied;
+		}
+	}
 
-		numSprites++;
+	/**
+	 * Ajoute une commande de sprite dans la file du mode différé
+	 * @param texture : texture du sprite
+	 * @return indice de la commande dans la file
+	 */
+	private int queueCommand(Texture texture){
+		//agrandissement de la file si nécessaire, les tableaux sont conservés d'un batch à l'autre
+		if(numCommands == commandKeys.length){
+			int capacity= numCommands * 2;
+			int[] newVertices= new int[capacity * SPRITE_SIZE];
+			System.arraycopy(commandVertices, 0, newVertices, 0, numCommands * SPRITE_SIZE);
+			commandVertices= newVertices;
+			int[] newKeys= new int[capacity];
+			System.arraycopy(commandKeys, 0, newKeys, 0, numCommands);
+			commandKeys= newKeys;
+			sortedCommands= new int[capacity];
+			sortBuffer= new int[capacity];
+		}
+		//clé de tri : couche sur les 8 bits de poids fort, texture sur les 8 bits de poids faible
+		commandKeys[numCommands]= (layer << 8) | getTextureSlot(texture);
+		return numCommands++;
+	}
+	
+	/**
+	 * Donne l'indice de la texture parmi les textures utilisées par le batch différé en cours
+	 * @param texture : texture recherchée
+	 * @return indice de la texture
+	 */
+	private int getTextureSlot(Texture texture){
+		//les sprites consécutifs utilisent le plus souvent la même texture
+		if(batchTextures[lastTextureSlot] == texture) return lastTextureSlot;
+		for(int i= 0; i < numBatchTextures; i++){
+			if(batchTextures[i] == texture){
+				lastTextureSlot= i;
+				return i;
+			}
+		}
+		if(numBatchTextures == MAX_DEFERRED_TEXTURES) throw new IllegalStateException("Too many textures in a deferred batch");
+		batchTextures[numBatchTextures]= texture;
+		lastTextureSlot= numBatchTextures;
+		return numBatchTextures++;
+	}
+	
+	/**
+	 * Trie les commandes du mode différé par couche puis par texture
+	 * Tri par base sur 2 passes de 8 bits, stable pour conserver l'ordre d'ajout à clé égale
+	 */
+	private void sortCommands(){
+		int[] src= sortedCommands;
+		int[] dst= sortBuffer;
+		int[] counts= radixCounts;
+		int[] keys= commandKeys;
+		for(int i= 0; i < numCommands; i++){
+			src[i]= i;
+		}
+		for(int shift= 0; shift < 16; shift+= 8){
+			//histogramme des valeurs de la clé pour cette passe
+			for(int i= 0; i < 256; i++){
+				counts[i]= 0;
+			}
+			for(int i= 0; i < numCommands; i++){
+				counts[(keys[src[i]] >> shift) & 0xFF]++;
+			}
+			//conversion en positions de départ
+			int position= 0;
+			for(int i= 0; i < 256; i++){
+				int count= counts[i];
+				counts[i]= position;
+				position+= count;
+			}
+			//répartition
+			for(int i= 0; i < numCommands; i++){
+				int command= src[i];
+				dst[counts[(keys[command] >> shift) & 0xFF]++]= command;
+			}
+			int[] swap= src;
+			src= dst;
+			dst= swap;
+		}
+		//après un nombre pair de passes le résultat est dans sortedCommands
+	}
+	
+	/**
+	 * Trie les commandes du mode différé et les envoie dans le buffer
+	 * Le buffer n'est vidé qu'au changement de texture ou s'il est plein
+	 */
+	private void emitCommands(){
+		sortCommands();
+		for(int i= 0; i < numCommands; i++){
+			int command= sortedCommands[i];
+			checkFlush(batchTextures[commandKeys[command] & 0xFF]);
+			vertices.putInts(commandVertices, command * SPRITE_SIZE, SPRITE_SIZE);
+			numSprites++;
+		}
+		numCommands= 0;
+		//on ne garde pas de référence sur les textures d'un batch à l'autre
+		for(int i= 0; i < numBatchTextures; i++){
+			batchTextures[i]= null;
+		}
+		numBatchTextures= 0;
+		lastTextureSlot= 0;
+	}
+	
+	/**
+	 * Active ou désactive le mode différé, à appeler en dehors d'un batch
+	 * En mode différé les sprites sont triés par couche puis par texture à la fin du batch,
+	 * l'ordre d'affichage n'est donc garanti qu'entre couches différentes
+	 * @param deferred : true pour activer le mode différé
+	 */
+	public void setDeferred(boolean deferred){
+		this.deferred= deferred;
+		//la file démarre à la taille du buffer et grandit au besoin
+		if(deferred && commandKeys == null){
+			commandVertices= new int[maxSprites * SPRITE_SIZE];
+			commandKeys= new int[maxSprites];
+			sortedCommands= new int[maxSprites];
+			sortBuffer= new int[maxSprites];
+		}
+	}
+	
+	/**
+	 * Choisit la couche des prochains sprites en mode différé
+	 * @param layer : couche [0-255], les couches basses sont dessinées en premier
+	 */
+	public void setLayer(int layer){
+		if(layer < 0 || layer >= MAX_LAYERS) throw new IllegalArgumentException("Layer must be between 0 and " + (MAX_LAYERS - 1));
+		this.layer= layer;
 	}
 	
 	/** 
 	 * Termine le batch en cours en faisant un rendu openGL ES 
 	 */
 	public void endBatch() {
-		vertices.setVertices(verticesBuffer, 0, bufferIndex);
+		if(deferred) emitCommands();
+		flush();
+	}
+	
+	/**
+	 * Fait le rendu openGL ES des sprites présents dans le buffer puis vide le buffer
+	 */
+	public void flush() {
+		if(numSprites == 0) return;
+		vertices.endWrite();
 		vertices.bind();
 		//appel openGl ES
 		vertices.draw(GL10.GL_TRIANGLES, 0, numSprites * 6);
 		vertices.unbind();
+		renderCalls++;
+		numSprites = 0;
+		//les données ont été consommées par le draw, on peut réécrire par dessus
+		vertices.beginWrite();
+	}
+	
+	/**
+	 * Remet à zéro les compteurs de rendu, à appeler en début de frame
+	 */
+	public void resetStats() {
+		renderCalls = 0;
+		textureSwitches = 0;
+		culledSprites = 0;
+		submittedSprites = 0;
+	}
+	
+	/**
+	 * Libère les ressources GPU du batcher
+	 */
+	public void dispose(){
+		vertices.dispose();
 	}
 }
\ No newline at end of file
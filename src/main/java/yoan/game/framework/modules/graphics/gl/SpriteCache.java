@@ -0,0 +1,267 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import yoan.game.framework.util.math.FastTrig;
+
+/**
+ * Cache de sprites statiques (décor, couches de tuiles, cadres d'interface...)
+ * Les sprites sont enregistrés une seule fois, dans un VBO si OpenGL ES 1.1 est supporté,
+ * puis chaque cache est redessiné sans aucun calcul de vertex
+ * @author yoan
+ */
+public class SpriteCache {
+	/** Contient les vertices de tous les caches */
+	final Vertices vertices;
+	/** Nombre de sprite maximum pour l'ensemble des caches */
+	final int maxSprites;
+	/** Nombre de sprites enregistrés dans l'ensemble des caches */
+	int numSprites;
+	/** Texture de chaque segment (suite de sprites partageant une texture) */
+	Texture[] segmentTextures;
+	/** Premier sprite de chaque segment */
+	int[] segmentStarts;
+	/** Nombre de sprites de chaque segment */
+	int[] segmentCounts;
+	/** Nombre de segments enregistrés */
+	int numSegments;
+	/** Premier segment de chaque cache */
+	int[] cacheFirstSegments;
+	/** Nombre de segments de chaque cache */
+	int[] cacheSegmentCounts;
+	/** Nombre de caches enregistrés */
+	int numCaches;
+	/** Indique si un cache est en cours d'enregistrement */
+	boolean recording;
+	/** Premier segment du cache en cours d'enregistrement */
+	int recordingFirstSegment;
+	/** Table trigonométrique pour les sprites avec rotation */
+	FastTrig trig= FastTrig.DEFAULT;
+	/** Nombre d'appels de rendu openGL ES depuis la dernière remise à zéro des compteurs */
+	public int renderCalls;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param glGraphics : Accès Android à OpenGL ES 1.0
+	 * @param maxSprites : Nombre de sprite maximum pour l'ensemble des caches
+	 */
+	public SpriteCache(GLGraphics glGraphics, int maxSprites){
+		this.maxSprites= maxSprites;
+		//même format de vertex que le SpriteBatcher, stocké de manière statique
+		this.vertices= new Vertices(glGraphics, maxSprites * 4, maxSprites * 6, GL10.GL_FLOAT, GL10.GL_UNSIGNED_BYTE, GL10.GL_SHORT, true);
+		this.vertices.setStatic(true);
+		short[] indices= SpriteBatcher.createQuadIndices(maxSprites);
+		vertices.setIndices(indices, 0, indices.length);
+		this.segmentTextures= new Texture[16];
+		this.segmentStarts= new int[16];
+		this.segmentCounts= new int[16];
+		this.cacheFirstSegments= new int[16];
+		this.cacheSegmentCounts= new int[16];
+		clear();
+	}
+
+	/**
+	 * Commence l'enregistrement d'un nouveau cache
+	 */
+	public void beginCache(){
+		if(recording) throw new IllegalStateException("A cache is already being recorded");
+		recording= true;
+		recordingFirstSegment= numSegments;
+		//on écrit à la suite des caches déjà enregistrés
+		vertices.continueWrite();
+	}
+
+	/**
+	 * Termine l'enregistrement du cache en cours
+	 * @return identifiant du cache à passer à draw
+	 */
+	public int endCache(){
+		if(!recording) throw new IllegalStateException("No cache is being recorded");
+		recording= false;
+		vertices.endWrite();
+		if(numCaches == cacheFirstSegments.length){
+			cacheFirstSegments= grow(cacheFirstSegments);
+			cacheSegmentCounts= grow(cacheSegmentCounts);
+		}
+		cacheFirstSegments[numCaches]= recordingFirstSegment;
+		cacheSegmentCounts[numCaches]= numSegments - recordingFirstSegment;
+		return numCaches++;
+	}
+
+	/**
+	 * Supprime tous les caches enregistrés
+	 */
+	public void clear(){
+		if(recording) throw new IllegalStateException("Cannot clear while a cache is being recorded");
+		for(int i= 0; i < numSegments; i++){
+			segmentTextures[i]= null;
+		}
+		numSprites= 0;
+		numSegments= 0;
+		numCaches= 0;
+		vertices.beginWrite();
+		vertices.endWrite();
+	}
+
+	/**
+	 * Ajoute un sprite au cache en cours d'enregistrement
+	 * @param x : abcisse du centre du sprite
+	 * @param y : ordonnée du centre du sprite
+	 * @param width : largeur du sprite
+	 * @param height : hauteur du sprite
+	 * @param region : région du texture atlas à utiliser
+	 */
+	public void add(float x, float y, float width, float height, TextureRegion region){
+		add(x, y, width, height, region, SpriteBatcher.WHITE);
+	}
+
+	/**
+	 * Ajoute un sprite teinté au cache en cours d'enregistrement
+	 * @param x : abcisse du centre du sprite
+	 * @param y : ordonnée du centre du sprite
+	 * @param width : largeur du sprite
+	 * @param height : hauteur du sprite
+	 * @param region : région du texture atlas à utiliser
+	 * @param color : teinte multipliée à la texture, empaquetée via Vertices.packColor
+	 */
+	public void add(float x, float y, float width, float height, TextureRegion region, int color){
+		float halfWidth= width / 2;
+		float halfHeight= height / 2;
+		float x1= x - halfWidth;
+		float y1= y - halfHeight;
+		float x2= x + halfWidth;
+		float y2= y + halfHeight;
+		addQuad(x1, y1, x2, y1, x2, y2, x1, y2, region, color);
+	}
+
+	/**
+	 * Ajoute un sprite teinté avec une rotation autour de son centre au cache en cours d'enregistrement
+	 * @param x : abcisse du centre du sprite
+	 * @param y : ordonnée du centre du sprite
+	 * @param width : largeur du sprite
+	 * @param height : hauteur du sprite
+	 * @param angle : angle de rotation en degré
+	 * @param region : région du texture atlas à utiliser
+	 * @param color : teinte multipliée à la texture, empaquetée via Vertices.packColor
+	 */
+	public void add(float x, float y, float width, float height, float angle, TextureRegion region, int color){
+		float cos= trig.cosDeg(angle);
+		float sin= trig.sinDeg(angle);
+		//côtés du sprite après rotation
+		float widthX= width * cos;
+		float widthY= width * sin;
+		float heightX= -height * sin;
+		float heightY= height * cos;
+		//coin inférieur gauche puis les autres par addition
+		float x1= x - (widthX + heightX) / 2;
+		float y1= y - (widthY + heightY) / 2;
+		float x2= x1 + widthX;
+		float y2= y1 + widthY;
+		addQuad(x1, y1, x2, y2, x2 + heightX, y2 + heightY, x1 + heightX, y1 + heightY, region, color);
+	}
+
+	/**
+	 * Ecrit les vertices d'un sprite à la suite du cache en cours
+	 * Les coins sont donnés dans l'ordre : inférieur gauche, inférieur droit, supérieur droit, supérieur gauche
+	 * @param x1 : abcisse du coin inférieur gauche
+	 * @param y1 : ordonnée du coin inférieur gauche
+	 * @param x2 : abcisse du coin inférieur droit
+	 * @param y2 : ordonnée du coin inférieur droit
+	 * @param x3 : abcisse du coin supérieur droit
+	 * @param y3 : ordonnée du coin supérieur droit
+	 * @param x4 : abcisse du coin supérieur gauche
+	 * @param y4 : ordonnée du coin supérieur gauche
+	 * @param region : région du texture atlas à utiliser
+	 * @param color : teinte empaquetée du sprite
+	 */
+	private void addQuad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4, TextureRegion region, int color){
+		if(!recording) throw new IllegalStateException("beginCache must be called before adding sprites");
+		if(numSprites == maxSprites) throw new IllegalStateException("Sprite cache is full (" + maxSprites + " sprites)");
+		//nouveau segment si la texture change
+		if(numSegments == recordingFirstSegment || segmentTextures[numSegments - 1] != region.texture){
+			if(numSegments == segmentTextures.length){
+				Texture[] textures= new Texture[numSegments * 2];
+				System.arraycopy(segmentTextures, 0, textures, 0, numSegments);
+				segmentTextures= textures;
+				segmentStarts= grow(segmentStarts);
+				segmentCounts= grow(segmentCounts);
+			}
+			segmentTextures[numSegments]= region.texture;
+			segmentStarts[numSegments]= numSprites;
+			segmentCounts[numSegments]= 0;
+			numSegments++;
+		}
+		segmentCounts[numSegments - 1]++;
+		numSprites++;
+		vertices.putVertex(x1, y1, color, region.packedU1V2);
+		vertices.putVertex(x2, y2, color, region.packedU2V2);
+		vertices.putVertex(x3, y3, color, region.packedU2V1);
+		vertices.putVertex(x4, y4, color, region.packedU1V1);
+	}
+
+	/**
+	 * Double la taille d'un tableau
+	 * @param array : tableau à agrandir
+	 * @return nouveau tableau contenant les anciennes valeurs
+	 */
+	private static int[] grow(int[] array){
+		int[] newArray= new int[array.length * 2];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	/**
+	 * Prépare l'affichage des caches, les données sont envoyées au GPU si elles ont changé
+	 */
+	public void begin(){
+		if(recording) throw new IllegalStateException("endCache must be called before drawing");
+		vertices.bind();
+	}
+
+	/**
+	 * Dessine un cache entier, un appel de rendu par texture utilisée
+	 * Doit être appelé entre begin et end
+	 * @param cacheId : identifiant renvoyé par endCache
+	 */
+	public void draw(int cacheId){
+		if(cacheId < 0 || cacheId >= numCaches) throw new IllegalArgumentException("Unknown cache " + cacheId);
+		int first= cacheFirstSegments[cacheId];
+		int last= first + cacheSegmentCounts[cacheId];
+		for(int i= first; i < last; i++){
+			segmentTextures[i].bind();
+			//6 indices par sprite
+			vertices.draw(GL10.GL_TRIANGLES, segmentStarts[i] * 6, segmentCounts[i] * 6);
+			renderCalls++;
+		}
+	}
+
+	/**
+	 * Termine l'affichage des caches
+	 */
+	public void end(){
+		vertices.unbind();
+	}
+
+	/**
+	 * Choisit la table trigonométrique utilisée pour les sprites avec rotation
+	 * @param trig : table à utiliser
+	 */
+	public void setTrig(FastTrig trig){
+		if(trig == null) throw new IllegalArgumentException("Trig table must not be null");
+		this.trig= trig;
+	}
+
+	/**
+	 * Remet à zéro les compteurs de rendu, à appeler en début de frame
+	 */
+	public void resetStats(){
+		renderCalls= 0;
+	}
+
+	/**
+	 * Libère les ressources GPU du cache
+	 */
+	public void dispose(){
+		vertices.dispose();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,388 @@
+package yoan.game.framework.modules.graphics.gl;
+
+/**
+ * Mise en page d'un texte d'une BitmapFont, calculée une seule fois puis redessinée à volonté
+ * Les vertices des glyphes sont gardés empaquetés relativement au point d'ancrage du texte : déplacer ou redessiner le texte
+ * ne demande qu'une translation des positions, et redessiner le texte au même endroit une simple copie vers le batcher
+ * La mise en page n'est refaite que si le texte ou ses paramètres changent
+ * Gère les retours à la ligne, l'alignement des lignes et le passage à la ligne automatique sur les espaces
+ * @author yoan
+ */
+public class TextCache {
+	/**
+	 * Alignement des lignes par rapport au point d'ancrage
+	 */
+	public enum Alignment{
+		/** Les lignes commencent au point d'ancrage */
+		Left,
+		/** Les lignes sont centrées sur le point d'ancrage */
+		Center,
+		/** Les lignes finissent au point d'ancrage */
+		Right
+	}
+
+	/** Font du texte */
+	final BitmapFont font;
+	/** Texte mis en page */
+	final StringBuilder text= new StringBuilder();
+	/** Alignement des lignes */
+	Alignment alignment= Alignment.Left;
+	/** Largeur au delà de laquelle une ligne est coupée, 0 pour ne couper qu'aux '\n' */
+	float wrapWidth;
+	/** Taille d'un pixel de la font dans le jeu */
+	float scale= 1;
+	/** Indique si la mise en page doit être refaite */
+	boolean dirty= true;
+	/** Nombre de sprites de glyphe */
+	int numGlyphs;
+	/** Vertices de chaque sprite au format du SpriteBatcher, positions relatives au point d'ancrage et sans couleur */
+	int[] glyphQuads;
+	/** Vertices des sprites translatés et teintés lors du dernier dessin */
+	int[] drawnQuads;
+	/** Indique si drawnQuads correspond à la mise en page courante */
+	boolean drawnValid;
+	/** Point d'ancrage du dernier dessin */
+	float drawnX, drawnY;
+	/** Teinte du dernier dessin */
+	int drawnColor;
+	/** Région de texture de chaque sprite */
+	TextureRegion[] glyphRegions;
+	/** Nombre de lignes du texte mis en page */
+	int numLines;
+	/** Largeur de la plus longue ligne */
+	float width;
+	/** Début de la ligne suivant celle trouvée par findLineEnd */
+	int nextLineStart;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param font : font du texte
+	 */
+	public TextCache(BitmapFont font){
+		this.font= font;
+		this.glyphQuads= new int[32 * SpriteBatcher.SPRITE_SIZE];
+		this.drawnQuads= new int[32 * SpriteBatcher.SPRITE_SIZE];
+		this.glyphRegions= new TextureRegion[32];
+	}
+
+	/**
+	 * Change le texte, la mise en page n'est refaite que si son contenu a changé
+	 * Le texte est copié : un StringBuilder peut être réutilisé par l'appelant
+	 * @param newText : texte à afficher, '\n' passe à la ligne
+	 * @return true si le texte a changé
+	 */
+	public boolean setText(CharSequence newText){
+		int length= newText.length();
+		if(length == text.length()){
+			int i= 0;
+			while(i < length && text.charAt(i) == newText.charAt(i)){
+				i++;
+			}
+			if(i == length) return false;
+		}
+		text.setLength(0);
+		text.append(newText);
+		dirty= true;
+		return true;
+	}
+
+	/**
+	 * Change l'alignement des lignes
+	 * @param alignment : alignement par rapport au point d'ancrage
+	 */
+	public void setAlignment(Alignment alignment){
+		if(alignment == null) throw new IllegalArgumentException("Alignment must not be null");
+		if(this.alignment == alignment) return;
+		this.alignment= alignment;
+		dirty= true;
+	}
+
+	/**
+	 * Change la largeur de passage à la ligne automatique
+	 * Les lignes sont coupées au dernier espace, ou au milieu d'un mot plus long que la largeur
+	 * @param wrapWidth : largeur maximum d'une ligne dans le jeu, 0 pour ne couper qu'aux '\n'
+	 */
+	public void setWrapWidth(float wrapWidth){
+		if(wrapWidth < 0) throw new IllegalArgumentException("Wrap width must be positive");
+		if(this.wrapWidth == wrapWidth) return;
+		this.wrapWidth= wrapWidth;
+		dirty= true;
+	}
+
+	/**
+	 * Change la taille du texte
+	 * @param scale : taille d'un pixel de la font dans le jeu
+	 */
+	public void setScale(float scale){
+		if(scale <= 0) throw new IllegalArgumentException("Scale must be strictly positive");
+		if(this.scale == scale) return;
+		this.scale= scale;
+		dirty= true;
+	}
+
+	/**
+	 * Refait la mise en page si nécessaire
+	 */
+	private void update(){
+		if(!dirty) return;
+		dirty= false;
+		drawnValid= false;
+		numGlyphs= 0;
+		numLines= 0;
+		width= 0;
+		int length= text.length();
+		int start= 0;
+		while(true){
+			int end= findLineEnd(start);
+			layoutLine(start, end);
+			if(nextLineStart > length) break;
+			start= nextLineStart;
+		}
+	}
+
+	/**
+	 * Cherche la fin d'une ligne, à un '\n' ou là où la largeur de passage à la ligne est dépassée
+	 * Le début de la ligne suivante est rangé dans nextLineStart, au delà de la fin du texte s'il n'y en a pas
+	 * @param start : début de la ligne
+	 * @return indice suivant le dernier caractère de la ligne, sans le '\n' ou l'espace de coupure
+	 */
+	private int findLineEnd(int start){
+		int length= text.length();
+		int lineWidth= 0;
+		int lastSpace= -1;
+		char previous= 0;
+		for(int i= start; i < length; i++){
+			char c= text.charAt(i);
+			if(c == '\n'){
+				nextLineStart= i + 1;
+				return i;
+			}
+			if(c == ' ') lastSpace= i;
+			int glyph= font.getGlyph(c);
+			if(glyph == BitmapFont.NO_GLYPH) continue;
+			if(previous != 0) lineWidth+= font.getKerning(previous, c);
+			lineWidth+= font.xAdvance[glyph];
+			previous= c;
+			if(wrapWidth > 0 && c != ' ' && lineWidth * scale > wrapWidth){
+				if(lastSpace > start){
+					nextLineStart= lastSpace + 1;
+					return lastSpace;
+				}
+				//mot plus long qu'une ligne : coupé avant le caractère qui dépasse
+				if(i > start){
+					nextLineStart= i;
+					return i;
+				}
+			}
+		}
+		nextLineStart= length + 1;
+		return length;
+	}
+
+	/**
+	 * Enregistre les sprites d'une ligne, alignée par rapport au point d'ancrage
+	 * @param start : indice du premier caractère de la ligne
+	 * @param end : indice suivant le dernier caractère de la ligne
+	 */
+	private void layoutLine(int start, int end){
+		float lineWidth= font.getWidth(text, start, end) * scale;
+		if(lineWidth > width) width= lineWidth;
+		float cursorX;
+		switch (alignment) {
+			case Center :
+				cursorX= -lineWidth / 2;
+				break;
+			case Right :
+				cursorX= -lineWidth;
+				break;
+			default :
+				cursorX= 0;
+				break;
+		}
+		//le point d'ancrage est sur la ligne de base de la première ligne
+		float lineTop= (font.base - numLines * font.lineHeight) * scale;
+		numLines++;
+		char previous= 0;
+		for(int i= start; i < end; i++){
+			char c= text.charAt(i);
+			int glyph= font.getGlyph(c);
+			if(glyph == BitmapFont.NO_GLYPH) continue;
+			if(previous != 0) cursorX+= font.getKerning(previous, c) * scale;
+			previous= c;
+			TextureRegion region= font.regions[glyph];
+			if(region != null){
+				float left= cursorX + font.xOffset[glyph] * scale;
+				float top= lineTop - font.yOffset[glyph] * scale;
+				addGlyph(left, top - font.glyphHeight[glyph] * scale, left + font.glyphWidth[glyph] * scale, top, region);
+			}
+			cursorX+= font.xAdvance[glyph] * scale;
+		}
+	}
+
+	/**
+	 * Enregistre les vertices du sprite d'une glyphe, dans l'ordre des coins du SpriteBatcher
+	 * @param x1 : abcisse du bord gauche par rapport au point d'ancrage
+	 * @param y1 : ordonnée du bord bas par rapport au point d'ancrage
+	 * @param x2 : abcisse du bord droit par rapport au point d'ancrage
+	 * @param y2 : ordonnée du bord haut par rapport au point d'ancrage
+	 * @param region : région de la glyphe
+	 */
+	private void addGlyph(float x1, float y1, float x2, float y2, TextureRegion region){
+		if(numGlyphs == glyphRegions.length){
+			int size= numGlyphs * 2;
+			glyphQuads= grow(glyphQuads, size * SpriteBatcher.SPRITE_SIZE);
+			drawnQuads= new int[size * SpriteBatcher.SPRITE_SIZE];
+			TextureRegion[] regions= new TextureRegion[size];
+			System.arraycopy(glyphRegions, 0, regions, 0, numGlyphs);
+			glyphRegions= regions;
+		}
+		int[] quads= glyphQuads;
+		int index= numGlyphs * SpriteBatcher.SPRITE_SIZE;
+		int left= Float.floatToRawIntBits(x1);
+		int bottom= Float.floatToRawIntBits(y1);
+		int right= Float.floatToRawIntBits(x2);
+		int top= Float.floatToRawIntBits(y2);
+		//la couleur est écrite au dessin
+		quads[index]= left;
+		quads[index + 1]= bottom;
+		quads[index + 3]= region.packedU1V2;
+		quads[index + 4]= right;
+		quads[index + 5]= bottom;
+		quads[index + 7]= region.packedU2V2;
+		quads[index + 8]= right;
+		quads[index + 9]= top;
+		quads[index + 11]= region.packedU2V1;
+		quads[index + 12]= left;
+		quads[index + 13]= top;
+		quads[index + 15]= region.packedU1V1;
+		glyphRegions[numGlyphs]= region;
+		numGlyphs++;
+	}
+
+	/**
+	 * Agrandit un tableau
+	 * @param array : tableau à agrandir
+	 * @param size : nouvelle taille
+	 * @return nouveau tableau contenant les anciennes valeurs
+	 */
+	private static int[] grow(int[] array, int size){
+		int[] newArray= new int[size];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	/**
+	 * Dessine le texte avec la teinte du batcher
+	 * @param batcher : le batcher de sprite pour l'affichage
+	 * @param x : abcisse du point d'ancrage
+	 * @param y : ordonnée du point d'ancrage, sur la ligne de base de la première ligne
+	 */
+	public void draw(SpriteBatcher batcher, float x, float y){
+		draw(batcher, x, y, batcher.getColor());
+	}
+
+	/**
+	 * Dessine le texte, les vertices mis en page sont translatés puis copiés dans le batcher par glyphes consécutives de même texture
+	 * Au même endroit et avec la même teinte que le dessin précédent, les vertices sont copiés sans aucun calcul
+	 * Les glyphes ne sont pas éliminées par le culling du batcher
+	 * @param batcher : le batcher de sprite pour l'affichage
+	 * @param x : abcisse du point d'ancrage
+	 * @param y : ordonnée du point d'ancrage, sur la ligne de base de la première ligne
+	 * @param color : teinte du texte, empaquetée via Vertices.packColor
+	 */
+	public void draw(SpriteBatcher batcher, float x, float y, int color){
+		update();
+		if(numGlyphs == 0) return;
+		if(!drawnValid || x != drawnX || y != drawnY || color != drawnColor) translate(x, y, color);
+		int[] quads= drawnQuads;
+		int start= 0;
+		Texture texture= glyphRegions[0].texture;
+		for(int i= 1; i < numGlyphs; i++){
+			Texture next= glyphRegions[i].texture;
+			if(next == texture) continue;
+			batcher.drawQuads(quads, start * SpriteBatcher.SPRITE_SIZE, i - start, texture);
+			start= i;
+			texture= next;
+		}
+		batcher.drawQuads(quads, start * SpriteBatcher.SPRITE_SIZE, numGlyphs - start, texture);
+	}
+
+	/**
+	 * Calcule les vertices des sprites pour un dessin à partir d'un point d'ancrage
+	 * @param x : abcisse du point d'ancrage
+	 * @param y : ordonnée du point d'ancrage
+	 * @param color : teinte empaquetée
+	 */
+	private void translate(float x, float y, int color){
+		int[] src= glyphQuads;
+		int[] dst= drawnQuads;
+		int length= numGlyphs * SpriteBatcher.SPRITE_SIZE;
+		//4 mots par vertex : x, y, couleur, coordonnées de texture
+		for(int i= 0; i < length; i+= 4){
+			dst[i]= Float.floatToRawIntBits(Float.intBitsToFloat(src[i]) + x);
+			dst[i + 1]= Float.floatToRawIntBits(Float.intBitsToFloat(src[i + 1]) + y);
+			dst[i + 2]= color;
+			dst[i + 3]= src[i + 3];
+		}
+		drawnX= x;
+		drawnY= y;
+		drawnColor= color;
+		drawnValid= true;
+	}
+
+	/**
+	 * Ajoute le texte au cache de sprites en cours d'enregistrement, pour les textes qui ne changent plus
+	 * @param cache : cache de sprites
+	 * @param x : abcisse du point d'ancrage
+	 * @param y : ordonnée du point d'ancrage, sur la ligne de base de la première ligne
+	 * @param color : teinte du texte, empaquetée via Vertices.packColor
+	 */
+	public void addTo(SpriteCache cache, float x, float y, int color){
+		update();
+		int[] quads= glyphQuads;
+		for(int i= 0; i < numGlyphs; i++){
+			int index= i * SpriteBatcher.SPRITE_SIZE;
+			//coins inférieur gauche et supérieur droit
+			float x1= Float.intBitsToFloat(quads[index]);
+			float y1= Float.intBitsToFloat(quads[index + 1]);
+			float x2= Float.intBitsToFloat(quads[index + 8]);
+			float y2= Float.intBitsToFloat(quads[index + 9]);
+			cache.add(x + (x1 + x2) / 2, y + (y1 + y2) / 2, x2 - x1, y2 - y1, glyphRegions[i], color);
+		}
+	}
+
+	/**
+	 * Donne la largeur du texte mis en page
+	 * @return largeur de la plus longue ligne dans le jeu
+	 */
+	public float getWidth(){
+		update();
+		return width;
+	}
+
+	/**
+	 * Donne la hauteur du texte mis en page
+	 * @return hauteur de l'ensemble des lignes dans le jeu
+	 */
+	public float getHeight(){
+		update();
+		return numLines * font.lineHeight * scale;
+	}
+
+	/**
+	 * Donne le nombre de lignes du texte mis en page
+	 * @return nombre de lignes, retours à la ligne automatiques compris
+	 */
+	public int getLineCount(){
+		update();
+		return numLines;
+	}
+
+	/**
+	 * Donne le texte mis en page
+	 * @return texte, à ne pas modifier
+	 */
+	public CharSequence getText(){
+		return text;
+	}
+}
\ No newline at end of file
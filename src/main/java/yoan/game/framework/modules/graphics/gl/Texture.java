@@ -1,21 +1,43 @@
 package yoan.game.framework.modules.graphics.gl;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
 
 import yoan.game.framework.modules.fileio.FileIO;
 import yoan.game.framework.modules.game.gl.GLGame;
+import yoan.game.framework.modules.graphics.Graphics.PixmapFormat;
 import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapFactory.Options;
+import android.opengl.ETC1;
+import android.opengl.ETC1Util;
+import android.opengl.ETC1Util.ETC1Texture;
 import android.opengl.GLUtils;
 
 /**
  * Gestion Android des textures pour OpenGL ES 1.0
+ * Chaque texture est enregistrée dans le GLResourceRegistry pour être rechargée après une perte du contexte :
+ * une texture dont on n'appelle pas dispose() n'est jamais libérée, ni dans le GPU ni en mémoire
  * @author yoan
  */
-public class Texture {
+public class Texture implements GLResource {
+	/** Extension des textures compressées ETC1 au format PKM */
+	public static final String PKM_EXTENSION= ".pkm";
+	/** Extension des textures compressées ETC1 au format KTX */
+	public static final String KTX_EXTENSION= ".ktx";
+	/** Suffixe de l'image contenant l'alpha d'une texture ETC1 (ETC1 ne stocke pas d'alpha) */
+	public static final String ALPHA_SUFFIX= "_alpha.png";
+	/** Identifiant de fichier KTX */
+	static final byte[] KTX_IDENTIFIER= {(byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+	/** Taille de l'entête d'un fichier KTX */
+	static final int KTX_HEADER_SIZE= 64;
 	/** Accès Android à OpenGL ES 1.0 */
 	GLGraphics glGraphics;
 	/** Gestionnaire de fichier */
@@ -32,6 +54,28 @@ public class Texture {
 	int width;
 	/** Hauteur de la texture */
 	int height;
+	/** Image de la texture conservée en mémoire pour les textures générées à l'exécution, null si chargée depuis un fichier */
+	Bitmap bitmap;
+	/** Format des pixels de la texture dans le GPU */
+	PixmapFormat format;
+	/** Indique si le décodage en 16 bits utilise le tramage */
+	boolean dither;
+	/** Indique si la chaîne de mipmaps doit être générée au chargement */
+	boolean mipmapped;
+	/** Indique si la texture chargée possède réellement des mipmaps */
+	boolean hasMipmaps;
+	/** Estimation de la mémoire GPU utilisée par la texture en bytes, mipmaps et texture d'alpha compris */
+	int byteSize;
+	/** Numéro du contexte OpenGL dans lequel la texture a été créée, -1 si elle est libérée */
+	int generation= -1;
+	/** Image décodée par un thread de fond pour la reconstruction après une perte du contexte */
+	Bitmap rebuildBitmap;
+	/** ID de la texture GL_ALPHA associée à une texture ETC1, 0 si aucune */
+	int alphaTextureId;
+	/** Atlas dont la texture est une page, redessinée à chaque rechargement, null sinon */
+	TextureAtlas atlas;
+	/** Indice de la page dans l'atlas */
+	int atlasPage;
 
 	/** 
 	 * Constructeur à partir du nom du fichier
@@ -39,39 +83,357 @@ public class Texture {
 	 * @param fileName : nom du fichier image de la texture
 	 */
 	public Texture(GLGame glGame, String fileName){
+		this(glGame, fileName, PixmapFormat.ARGB8888, false, false);
+	}
+
+	/** 
+	 * Constructeur à partir du nom du fichier avec génération éventuelle des mipmaps
+	 * Les mipmaps évitent le scintillement et économisent la bande passante quand la texture est affichée réduite (zoom arrière)
+	 * @param glGame : l'instance du jeu
+	 * @param fileName : nom du fichier image de la texture
+	 * @param mipmapped : indique si la chaîne de mipmaps est générée au chargement
+	 */
+	public Texture(GLGame glGame, String fileName, boolean mipmapped){
+		this(glGame, fileName, PixmapFormat.ARGB8888, false, mipmapped);
+	}
+
+	/** 
+	 * Constructeur à partir du nom du fichier avec le format des pixels dans le GPU
+	 * RGB565 convient aux fonds opaques, ARGB4444 aux éléments d'interface sans dégradé d'alpha :
+	 * la mémoire et la bande passante utilisées sont divisées par deux par rapport à ARGB8888
+	 * @param glGame : l'instance du jeu
+	 * @param fileName : nom du fichier image de la texture
+	 * @param format : format des pixels de la texture
+	 * @param dither : indique si l'image est tramée lors du passage en 16 bits pour éviter les bandes sur les dégradés
+	 * @param mipmapped : indique si la chaîne de mipmaps est générée au chargement
+	 */
+	public Texture(GLGame glGame, String fileName, PixmapFormat format, boolean dither, boolean mipmapped){
 		this.glGraphics= glGame.getGLGraphics();
 		this.fileIO= glGame.getFileIO();
 		this.fileName= fileName;
+		this.format= format;
+		this.dither= dither;
+		this.mipmapped= mipmapped;
 		//chargement de la texture
 		load();
+		glGraphics.getResources().register(this);
 	}
 
 	/**
-	 * Charge la texture dans la mémoire du GPU
+	 * Constructeur à partir d'une image générée à l'exécution (texture atlas...)
+	 * L'image est conservée pour pouvoir recharger la texture après une perte du contexte OpenGL,
+	 * elle reste référencée par le registre des ressources jusqu'à l'appel de dispose()
+	 * @param glGame : l'instance du jeu
+	 * @param name : nom de la texture
+	 * @param bitmap : image de la texture
 	 */
-	private void load(){
+	public Texture(GLGame glGame, String name, Bitmap bitmap){
+		this.glGraphics= glGame.getGLGraphics();
+		this.fileIO= glGame.getFileIO();
+		this.fileName= name;
+		this.bitmap= bitmap;
+		this.format= getFormat(bitmap.getConfig());
+		//chargement de la texture
+		load();
+		glGraphics.getResources().register(this);
+	}
+
+	/**
+	 * Constructeur d'une page de texture atlas
+	 * L'image n'est pas conservée : après une perte du contexte OpenGL la page est redessinée par l'atlas
+	 * @param glGame : l'instance du jeu
+	 * @param name : nom de la texture
+	 * @param atlas : atlas dont la texture est une page
+	 * @param page : indice de la page dans l'atlas
+	 * @param pageBitmap : image de la page, libérée après l'envoi vers le GPU
+	 */
+	Texture(GLGame glGame, String name, TextureAtlas atlas, int page, Bitmap pageBitmap){
+		this.glGraphics= glGame.getGLGraphics();
+		this.fileIO= glGame.getFileIO();
+		this.fileName= name;
+		this.atlas= atlas;
+		this.atlasPage= page;
+		this.format= getFormat(pageBitmap.getConfig());
+		generate();
+		upload(pageBitmap);
+		pageBitmap.recycle();
+		glGraphics.getResources().register(this);
+	}
+
+	/**
+	 * Constructeur à partir d'une image déjà décodée par le TextureLoader
+	 * L'image n'est pas conservée : après une perte du contexte OpenGL la texture est rechargée depuis le fichier
+	 * @param glGame : l'instance du jeu
+	 * @param fileName : nom du fichier image de la texture
+	 * @param format : format des pixels de la texture
+	 * @param dither : indique si l'image est tramée lors du passage en 16 bits
+	 * @param mipmapped : indique si la chaîne de mipmaps est générée au chargement
+	 * @param decoded : image décodée du fichier, au format demandé
+	 */
+	Texture(GLGame glGame, String fileName, PixmapFormat format, boolean dither, boolean mipmapped, Bitmap decoded){
+		this.glGraphics= glGame.getGLGraphics();
+		this.fileIO= glGame.getFileIO();
+		this.fileName= fileName;
+		this.format= format;
+		this.dither= dither;
+		this.mipmapped= mipmapped;
+		generate();
+		upload(decoded);
+		glGraphics.getResources().register(this);
+	}
+
+	/**
+	 * Génère l'ID de la texture dans la mémoire du GPU
+	 */
+	private void generate(){
 		GL10 gl= glGraphics.getGL();
 		//génération de l'ID de la texture dans la memoire GPU
 		int[] textureIds= new int[1];
 		gl.glGenTextures(1, textureIds, 0);
 		textureId= textureIds[0];
+		generation= glGraphics.getGeneration();
+		byteSize= 0;
+		//après une perte du contexte, l'ancienne texture d'alpha n'existe plus
+		if(alphaTextureId != 0){
+			alphaTextureId= 0;
+			glGraphics.alphaTextureCount--;
+		}
+	}
 		
-		
+	/**
+	 * Charge la texture dans la mémoire du GPU
+	 */
+	private void load(){
+		generate();
+		//texture générée à l'exécution : l'image est déjà en mémoire
+		if(this.bitmap != null){
+			upload(this.bitmap);
+			return;
+		}
+		//texture compressée
+		if(isETC1(fileName)){
+			loadETC1();
+			return;
+		}
+		Bitmap bitmap= atlas != null ? atlas.renderPage(atlasPage) : decode();
+		upload(bitmap);
+		bitmap.recycle();
+	}
+
+	/**
+	 * Décode l'image de la texture à partir de l'asset, sans appel OpenGL
+	 * @return image au format demandé
+	 */
+	private Bitmap decode(){
 		InputStream in= null;
 		try{
 			//lecture de la bitmap de la texture à partir de l'asset
 			in= fileIO.readAsset(fileName);
-			Bitmap bitmap= BitmapFactory.decodeStream(in);
-			width= bitmap.getWidth();
-			height= bitmap.getHeight();
-			//binding sur l'ID généré
+			Options options= new Options();
+			options.inPreferredConfig= getConfig(format);
+			options.inDither= dither;
+			Bitmap bitmap= BitmapFactory.decodeStream(in, null, options);
+			if(bitmap == null) throw new RuntimeException("Couldn't load texture '" + fileName + "'");
+			return convert(bitmap, options.inPreferredConfig);
+		}catch(IOException e){
+			throw new RuntimeException("Couldn't load texture '" + fileName + "'", e);
+		}finally{
+			if(in != null) try{
+				in.close();
+			}catch(IOException e){}
+		}
+	}
+
+	/**
+	 * Envoie l'image de la texture vers le GPU
+	 * @param bitmap : image de la texture
+	 */
+	private void upload(Bitmap bitmap){
+		GL10 gl= glGraphics.getGL();
+		width= bitmap.getWidth();
+		height= bitmap.getHeight();
+		//binding sur l'ID généré
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		//en OpenGL ES 1.1 le driver génère les mipmaps à chaque upload du niveau 0
+		GL11 gl11= mipmapped ? glGraphics.getGL11() : null;
+		if(gl11 != null) gl11.glTexParameteri(GL10.GL_TEXTURE_2D, GL11.GL_GENERATE_MIPMAP, 1);
+		//puis unpload de la bitmap vers le GPU
+		uploadLevel(bitmap, 0);
+		Config config= bitmap.getConfig();
+		byteSize= getByteSize(width, height, config);
+		if(mipmapped && gl11 == null){
+			//sinon chaque niveau est la réduction de moitié filtrée du précédent (moyenne de 2x2 pixels)
+			Bitmap level= bitmap;
+			int levelIndex= 0;
+			while(level.getWidth() > 1 || level.getHeight() > 1){
+				Bitmap next= Bitmap.createScaledBitmap(level, Math.max(1, level.getWidth() / 2), Math.max(1, level.getHeight() / 2), true);
+				if(level != bitmap) level.recycle();
+				//la réduction est en ARGB_8888 quelle que soit la source : tous les niveaux doivent avoir le format et le type du niveau 0
+				level= convert(next, config);
+				uploadLevel(level, ++levelIndex);
+				byteSize+= getByteSize(level.getWidth(), level.getHeight(), config);
+			}
+			if(level != bitmap) level.recycle();
+		}else if(mipmapped){
+			//la chaîne générée par le driver ajoute un tiers de la taille de base
+			byteSize+= byteSize / 3;
+		}
+		hasMipmaps= mipmapped;
+		//mise en place des filtres de min et mag
+		applyFilters();
+		//on ne pointe plus sur cet ID de texture
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+	}
+
+	/**
+	 * Envoie un niveau de mipmap vers le GPU
+	 * La texture doit déjà être bindée
+	 * @param bitmap : image du niveau
+	 * @param level : niveau de mipmap, 0 pour l'image de base
+	 */
+	private void uploadLevel(Bitmap bitmap, int level){
+		Config config= bitmap.getConfig();
+		if(config == Config.RGB_565 || config == Config.ARGB_4444){
+			upload16(bitmap, level, config == Config.RGB_565 ? GL10.GL_RGB : GL10.GL_RGBA, config == Config.RGB_565 ? GL10.GL_UNSIGNED_SHORT_5_6_5 : GL10.GL_UNSIGNED_SHORT_4_4_4_4);
+		}else{
+			GLUtils.texImage2D(GL10.GL_TEXTURE_2D, level, bitmap, 0);
+		}
+	}
+
+	/**
+	 * Envoie une image 16 bits vers le GPU sans conversion
+	 * Les pixels RGB_565 et ARGB_4444 d'Android ont la même disposition que les types OpenGL correspondants,
+	 * alors que GLUtils.texImage2D peut les convertir en 32 bits
+	 * La texture doit déjà être bindée
+	 * @param bitmap : image 16 bits
+	 * @param level : niveau de mipmap
+	 * @param glFormat : GL_RGB ou GL_RGBA
+	 * @param glType : GL_UNSIGNED_SHORT_5_6_5 ou GL_UNSIGNED_SHORT_4_4_4_4
+	 */
+	private void upload16(Bitmap bitmap, int level, int glFormat, int glType){
+		GL10 gl= glGraphics.getGL();
+		int rowBytes= bitmap.getRowBytes();
+		ByteBuffer pixels= ByteBuffer.allocateDirect(rowBytes * bitmap.getHeight());
+		pixels.order(ByteOrder.nativeOrder());
+		bitmap.copyPixelsToBuffer(pixels);
+		pixels.position(0);
+		//les lignes de la bitmap peuvent être alignées sur 4 bytes
+		gl.glPixelStorei(GL10.GL_UNPACK_ALIGNMENT, rowBytes % 4 == 0 ? 4 : 2);
+		gl.glTexImage2D(GL10.GL_TEXTURE_2D, level, glFormat, bitmap.getWidth(), bitmap.getHeight(), 0, glFormat, glType, pixels);
+		gl.glPixelStorei(GL10.GL_UNPACK_ALIGNMENT, 4);
+	}
+
+	/**
+	 * Donne la configuration de décodage Android correspondant à un format de pixel
+	 * @param format : format des pixels
+	 * @return configuration Android
+	 */
+	static Config getConfig(PixmapFormat format){
+		switch (format) {
+			case RGB565 :
+				return Config.RGB_565;
+			case ARGB4444 :
+				return Config.ARGB_4444;
+			default :
+				return Config.ARGB_8888;
+		}
+	}
+
+	/**
+	 * Convertit une image décodée dans le format demandé, la BitmapFactory d'Android pouvant l'ignorer
+	 * @param bitmap : image décodée, recyclée si elle est convertie
+	 * @param config : configuration demandée
+	 * @return image dans la configuration demandée
+	 */
+	static Bitmap convert(Bitmap bitmap, Config config){
+		if(bitmap.getConfig() == config) return bitmap;
+		Bitmap converted= bitmap.copy(config, false);
+		bitmap.recycle();
+		return converted;
+	}
+
+	/**
+	 * Donne le format de pixel correspondant à une configuration Android
+	 * @param config : configuration Android
+	 * @return format des pixels
+	 */
+	static PixmapFormat getFormat(Config config){
+		if(config == Config.RGB_565) return PixmapFormat.RGB565;
+		if(config == Config.ARGB_4444) return PixmapFormat.ARGB4444;
+		return PixmapFormat.ARGB8888;
+	}
+
+	/**
+	 * Donne le format des pixels de la texture dans le GPU
+	 * @return format des pixels
+	 */
+	public PixmapFormat getFormat(){
+		return format;
+	}
+
+	/**
+	 * Donne la largeur de la texture
+	 * @return largeur en pixel
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Donne la hauteur de la texture
+	 * @return hauteur en pixel
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Donne une estimation de la mémoire GPU utilisée par la texture
+	 * @return taille en bytes, mipmaps et texture d'alpha compris
+	 */
+	public int getByteSize(){
+		return byteSize;
+	}
+
+	/**
+	 * Donne le nom du fichier image de la texture
+	 * @return nom du fichier
+	 */
+	public String getFileName(){
+		return fileName;
+	}
+
+	/**
+	 * Indique si un fichier contient une texture compressée ETC1
+	 * @param fileName : nom du fichier
+	 * @return true pour les fichiers PKM et KTX
+	 */
+	static boolean isETC1(String fileName){
+		String lowerCase= fileName.toLowerCase();
+		return lowerCase.endsWith(PKM_EXTENSION) || lowerCase.endsWith(KTX_EXTENSION);
+	}
+
+	/**
+	 * Charge une texture compressée ETC1 (PKM ou KTX) et son éventuelle image d'alpha
+	 * Si le GPU ne supporte pas ETC1, la texture est décompressée en RGB565 par ETC1Util
+	 */
+	private void loadETC1(){
+		GL10 gl= glGraphics.getGL();
+		InputStream in= null;
+		try{
+			in= fileIO.readAsset(fileName);
 			gl.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
-			//puis unpload de la bitmap vers le GPU
-			GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
-			//mise en place des filtres de min et mag
-			setFilters(GL10.GL_NEAREST, GL10.GL_NEAREST);
-			//on ne pointe plus sur cet ID de texture
-			gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+			if(fileName.toLowerCase().endsWith(KTX_EXTENSION)){
+				uploadKTX(in);
+			}else{
+				ETC1Texture texture= ETC1Util.createTexture(in);
+				width= texture.getWidth();
+				height= texture.getHeight();
+				ETC1Util.loadTexture(GL10.GL_TEXTURE_2D, 0, 0, GL10.GL_RGB, GL10.GL_UNSIGNED_SHORT_5_6_5, texture);
+				byteSize= getETC1ByteSize(width, height);
+				//les données compressées ne permettent pas de générer les mipmaps
+				hasMipmaps= false;
+			}
 		}catch(IOException e){
 			throw new RuntimeException("Couldn't load texture '" + fileName + "'", e);
 		}finally{
@@ -79,30 +441,264 @@ public class Texture {
 				in.close();
 			}catch(IOException e){}
 		}
+		loadAlpha();
+		//les filtres s'appliquent aussi à la texture d'alpha
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		applyFilters();
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+	}
+
+	/**
+	 * Envoie vers le GPU tous les niveaux d'une texture ETC1 au format KTX
+	 * La texture doit déjà être bindée
+	 * @param in : flux du fichier KTX
+	 * @throws IOException : si le fichier n'est pas un KTX ETC1 valide
+	 */
+	private void uploadKTX(InputStream in) throws IOException{
+		ByteBuffer data= readFully(in);
+		for(int i= 0; i < KTX_IDENTIFIER.length; i++){
+			if(data.get(i) != KTX_IDENTIFIER[i]) throw new IOException("Not a KTX file");
+		}
+		//l'endianness du fichier est donnée par la valeur de référence 0x04030201
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		if(data.getInt(12) != 0x04030201) data.order(ByteOrder.BIG_ENDIAN);
+		if(data.getInt(28) != ETC1.ETC1_RGB8_OES) throw new IOException("Only ETC1 KTX files are supported");
+		width= data.getInt(36);
+		height= data.getInt(40);
+		int levels= Math.max(1, data.getInt(56));
+		//les mipmaps sont fournis par le fichier
+		hasMipmaps= levels > 1;
+		int offset= KTX_HEADER_SIZE + data.getInt(60);
+		int levelWidth= width;
+		int levelHeight= height;
+		for(int level= 0; level < levels; level++){
+			int size= data.getInt(offset);
+			offset+= 4;
+			data.position(offset);
+			data.limit(offset + size);
+			ETC1Texture texture= new ETC1Texture(levelWidth, levelHeight, data.slice());
+			ETC1Util.loadTexture(GL10.GL_TEXTURE_2D, level, 0, GL10.GL_RGB, GL10.GL_UNSIGNED_SHORT_5_6_5, texture);
+			byteSize+= getETC1ByteSize(levelWidth, levelHeight);
+			data.limit(data.capacity());
+			//les données de chaque niveau sont alignées sur 4 bytes
+			offset+= (size + 3) & ~3;
+			levelWidth= Math.max(1, levelWidth / 2);
+			levelHeight= Math.max(1, levelHeight / 2);
+		}
+	}
+
+	/**
+	 * Estime la mémoire GPU d'un niveau de texture non compressée
+	 * @param width : largeur du niveau
+	 * @param height : hauteur du niveau
+	 * @param config : configuration Android des pixels envoyés
+	 * @return taille du niveau en byte
+	 */
+	private static int getByteSize(int width, int height, Config config){
+		return width * height * (config == Config.RGB_565 || config == Config.ARGB_4444 ? 2 : config == Config.ALPHA_8 ? 1 : 4);
 	}
 
 	/**
-	 * Re-chargement d'une texture
+	 * Estime la mémoire GPU d'un niveau de texture ETC1
+	 * @param width : largeur du niveau
+	 * @param height : hauteur du niveau
+	 * @return taille compressée, ou taille en RGB565 si le GPU ne supporte pas ETC1
+	 */
+	private static int getETC1ByteSize(int width, int height){
+		return ETC1Util.isETC1Supported() ? ETC1.getEncodedDataSize(width, height) : width * height * 2;
+	}
+
+	/**
+	 * Lit entièrement un flux dans un buffer natif
+	 * @param in : flux à lire
+	 * @return buffer natif contenant les données
+	 * @throws IOException : en cas de problème de lecture
+	 */
+	private static ByteBuffer readFully(InputStream in) throws IOException{
+		byte[] bytes= new byte[Math.max(4096, in.available())];
+		int length= 0;
+		int read;
+		while((read= in.read(bytes, length, bytes.length - length)) != -1){
+			length+= read;
+			if(length == bytes.length){
+				byte[] newBytes= new byte[bytes.length * 2];
+				System.arraycopy(bytes, 0, newBytes, 0, length);
+				bytes= newBytes;
+			}
+		}
+		ByteBuffer buffer= ByteBuffer.allocateDirect(length);
+		buffer.put(bytes, 0, length);
+		buffer.position(0);
+		return buffer;
+	}
+
+	/**
+	 * Charge l'image d'alpha associée à une texture ETC1 dans une texture GL_ALPHA (1 byte par pixel)
+	 * L'alpha est lu dans le canal alpha de l'image, ou dans le rouge pour une image en niveaux de gris sans alpha
+	 */
+	private void loadAlpha(){
+		String alphaFileName= fileName.substring(0, fileName.lastIndexOf('.')) + ALPHA_SUFFIX;
+		Bitmap alphaBitmap;
+		InputStream in= null;
+		try{
+			in= fileIO.readAsset(alphaFileName);
+			alphaBitmap= BitmapFactory.decodeStream(in);
+		}catch(FileNotFoundException e){
+			//texture opaque
+			return;
+		}catch(IOException e){
+			throw new RuntimeException("Couldn't load texture '" + alphaFileName + "'", e);
+		}finally{
+			if(in != null) try{
+				in.close();
+			}catch(IOException e){}
+		}
+		int alphaWidth= alphaBitmap.getWidth();
+		int alphaHeight= alphaBitmap.getHeight();
+		boolean hasAlpha= alphaBitmap.hasAlpha();
+		ByteBuffer alpha= ByteBuffer.allocateDirect(alphaWidth * alphaHeight);
+		//extraction ligne par ligne pour limiter la mémoire temporaire
+		int[] row= new int[alphaWidth];
+		for(int y= 0; y < alphaHeight; y++){
+			alphaBitmap.getPixels(row, 0, alphaWidth, 0, y, alphaWidth, 1);
+			for(int x= 0; x < alphaWidth; x++){
+				alpha.put((byte) (hasAlpha ? row[x] >>> 24 : row[x] >> 16));
+			}
+		}
+		alphaBitmap.recycle();
+		alpha.position(0);
+		GL10 gl= glGraphics.getGL();
+		int[] textureIds= new int[1];
+		gl.glGenTextures(1, textureIds, 0);
+		alphaTextureId= textureIds[0];
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, alphaTextureId);
+		//lignes de 1 byte par pixel, pas forcément alignées sur 4 bytes
+		gl.glPixelStorei(GL10.GL_UNPACK_ALIGNMENT, 1);
+		gl.glTexImage2D(GL10.GL_TEXTURE_2D, 0, GL10.GL_ALPHA, alphaWidth, alphaHeight, 0, GL10.GL_ALPHA, GL10.GL_UNSIGNED_BYTE, alpha);
+		byteSize+= alphaWidth * alphaHeight;
+		//la texture d'alpha doit avoir autant de niveaux que la texture de couleur
+		int level= 0;
+		while(hasMipmaps && (alphaWidth > 1 || alphaHeight > 1)){
+			alpha= halveAlpha(alpha, alphaWidth, alphaHeight);
+			alphaWidth= Math.max(1, alphaWidth / 2);
+			alphaHeight= Math.max(1, alphaHeight / 2);
+			gl.glTexImage2D(GL10.GL_TEXTURE_2D, ++level, GL10.GL_ALPHA, alphaWidth, alphaHeight, 0, GL10.GL_ALPHA, GL10.GL_UNSIGNED_BYTE, alpha);
+			byteSize+= alphaWidth * alphaHeight;
+		}
+		gl.glPixelStorei(GL10.GL_UNPACK_ALIGNMENT, 4);
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+		glGraphics.alphaTextureCount++;
+	}
+
+	/**
+	 * Réduit de moitié une image d'alpha par moyenne de 2x2 pixels
+	 * @param alpha : pixels d'alpha, 1 byte par pixel
+	 * @param width : largeur de l'image
+	 * @param height : hauteur de l'image
+	 * @return pixels de l'image réduite
+	 */
+	private static ByteBuffer halveAlpha(ByteBuffer alpha, int width, int height){
+		int newWidth= Math.max(1, width / 2);
+		int newHeight= Math.max(1, height / 2);
+		ByteBuffer halved= ByteBuffer.allocateDirect(newWidth * newHeight);
+		for(int y= 0; y < newHeight; y++){
+			int row1= 2 * y * width;
+			//une dimension de 1 pixel est répétée
+			int row2= Math.min(2 * y + 1, height - 1) * width;
+			for(int x= 0; x < newWidth; x++){
+				int x1= 2 * x;
+				int x2= Math.min(x1 + 1, width - 1);
+				int sum= (alpha.get(row1 + x1) & 0xFF) + (alpha.get(row1 + x2) & 0xFF) + (alpha.get(row2 + x1) & 0xFF) + (alpha.get(row2 + x2) & 0xFF);
+				halved.put((byte) ((sum + 2) >> 2));
+			}
+		}
+		halved.position(0);
+		return halved;
+	}
+
+	/**
+	 * Re-chargement d'une texture après une perte du contexte OpenGL, les filtres sont conservés
+	 * Sans effet si la texture a déjà été recréée dans le contexte courant (par le GLResourceRegistry)
 	 */
 	public void reload(){
+		if(generation == glGraphics.getGeneration()) return;
 		load();
-		bind();
-		setFilters(minFilter, magFilter);
-		glGraphics.getGL().glBindTexture(GL10.GL_TEXTURE_2D, 0);
+	}
+
+	/**
+	 * Décode l'image de la texture, ou redessine la page d'atlas, sur un thread de fond
+	 * Les images conservées en mémoire et les textures ETC1 n'ont pas besoin d'être décodées
+	 */
+	public void prepareRebuild(){
+		if(atlas != null){
+			rebuildBitmap= atlas.renderPage(atlasPage);
+		}else if(bitmap == null && !isETC1(fileName)){
+			rebuildBitmap= decode();
+		}
+	}
+
+	/**
+	 * Recrée la texture dans le nouveau contexte OpenGL, à partir de l'image préparée si elle existe
+	 */
+	public void rebuild(){
+		if(generation == glGraphics.getGeneration()) return;
+		if(rebuildBitmap == null){
+			load();
+			return;
+		}
+		generate();
+		upload(rebuildBitmap);
+		rebuildBitmap.recycle();
+		rebuildBitmap= null;
+	}
+
+	/**
+	 * Libère l'image préparée si la reconstruction est abandonnée
+	 */
+	public void discardRebuild(){
+		if(rebuildBitmap == null) return;
+		rebuildBitmap.recycle();
+		rebuildBitmap= null;
+	}
+
+	/**
+	 * Met en place les filtres courants, ou les filtres par défaut au premier chargement
+	 * Necessite de faire préalablement un binding
+	 */
+	private void applyFilters(){
+		if(minFilter == 0){
+			setFilters(mipmapped ? GL10.GL_LINEAR_MIPMAP_NEAREST : GL10.GL_NEAREST, GL10.GL_NEAREST);
+		}else{
+			setFilters(minFilter, magFilter);
+		}
 	}
 
 	/**
 	 * Mise en place des filtres de minification et magnification (rescaling de la texture)
+	 * Les filtres de mipmap sont remplacés par le filtre correspondant sans mipmap si la texture n'en a pas,
+	 * une texture sans mipmaps avec un filtre de mipmap n'étant pas affichée
 	 * Necessite de faire préalablement un binding 
-	 * @param minFilter : LINEAR ou NEAREST
+	 * @param minFilter : LINEAR, NEAREST, ou pour les textures avec mipmaps LINEAR_MIPMAP_LINEAR (trilinéaire), LINEAR_MIPMAP_NEAREST,
+	 * NEAREST_MIPMAP_LINEAR, NEAREST_MIPMAP_NEAREST
 	 * @param magFilter : LINEAR ou NEAREST
 	 */
 	public void setFilters(int minFilter, int magFilter){
 		this.minFilter= minFilter;
 		this.magFilter= magFilter;
+		if(!hasMipmaps){
+			if(minFilter == GL10.GL_NEAREST_MIPMAP_NEAREST || minFilter == GL10.GL_NEAREST_MIPMAP_LINEAR) minFilter= GL10.GL_NEAREST;
+			if(minFilter == GL10.GL_LINEAR_MIPMAP_NEAREST || minFilter == GL10.GL_LINEAR_MIPMAP_LINEAR) minFilter= GL10.GL_LINEAR;
+		}
 		GL10 gl= glGraphics.getGL();
 		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, minFilter);
 		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, magFilter);
+		//la texture d'alpha doit être filtrée comme la texture de couleur
+		if(alphaTextureId != 0){
+			gl.glBindTexture(GL10.GL_TEXTURE_2D, alphaTextureId);
+			gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, minFilter);
+			gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, magFilter);
+			gl.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		}
 	}
 
 	/**
@@ -111,17 +707,39 @@ public class Texture {
 	public void bind(){
 		GL10 gl= glGraphics.getGL();
 		gl.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		//texture d'alpha sur la seconde unité, désactivée pour les autres textures
+		if(alphaTextureId != 0 || glGraphics.hasAlphaTextures()) glGraphics.bindAlphaTexture(alphaTextureId);
 	}
 
 	/**
 	 * Efface la texture de la mémoire GPU
 	 */
 	public void dispose(){
+		glGraphics.getResources().unregister(this);
+		//les IDs d'un contexte perdu n'existent plus (libération avant reconstruction) : rien à effacer du GPU
+		boolean live= generation == glGraphics.getGeneration();
+		generation= -1;
 		GL10 gl= glGraphics.getGL();
-		//on ne pointe plus sur cet ID de texture
-		gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
-		//et on l'efface du GPU
 		int[] textureIds= {textureId};
-		gl.glDeleteTextures(1, textureIds, 0);
+		if(live){
+			//on ne pointe plus sur cet ID de texture
+			gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+			//et on l'efface du GPU
+			gl.glDeleteTextures(1, textureIds, 0);
+		}
+		if(alphaTextureId != 0){
+			if(live){
+				glGraphics.bindAlphaTexture(0);
+				textureIds[0]= alphaTextureId;
+				gl.glDeleteTextures(1, textureIds, 0);
+			}
+			alphaTextureId= 0;
+			glGraphics.alphaTextureCount--;
+		}
+		//l'image conservée n'est plus utile
+		if(bitmap != null){
+			bitmap.recycle();
+			bitmap= null;
+		}
 	}
 }
\ No newline at end of file
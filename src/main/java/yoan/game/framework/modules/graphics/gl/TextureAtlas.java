@@ -0,0 +1,237 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import yoan.game.framework.modules.fileio.FileIO;
+import yoan.game.framework.modules.game.gl.GLGame;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * Texture atlas construit au chargement à partir d'images séparées
+ * Les images sont placées par le TexturePacker dans une ou plusieurs pages, chaque page devient une Texture
+ * Les images des pages ne sont pas conservées en mémoire : après une perte du contexte OpenGL les pages sont redessinées
+ * @author yoan
+ */
+public class TextureAtlas {
+	/** Régions de l'atlas indexées par nom de fichier */
+	final Map<String, TextureRegion> regions;
+	/** Textures des pages de l'atlas */
+	final List<Texture> pages;
+	/** Gestionnaire de fichier, pour redessiner les pages */
+	final FileIO fileIO;
+	/** Fichiers image placés dans l'atlas */
+	final String[] fileNames;
+	/** Page de chaque image */
+	final int[] imagePages;
+	/** Abcisse du coin supérieur gauche de chaque image dans sa page */
+	final int[] xs;
+	/** Ordonnée du coin supérieur gauche de chaque image dans sa page */
+	final int[] ys;
+	/** Largeur de chaque page */
+	final int[] pageWidths;
+	/** Hauteur de chaque page */
+	final int[] pageHeights;
+	/** Nombre de pixels de bord recopiés autour de chaque image, 0 sans débordement */
+	final int bleed;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param glGame : l'instance du jeu
+	 * @param fileNames : fichiers image à placer dans l'atlas
+	 * @param maxPageSize : taille maximum d'une page en pixel, puissance de 2
+	 * @param padding : marge en pixel autour de chaque image
+	 * @param bleed : indique si les pixels du bord de chaque image sont recopiés dans sa marge,
+	 * pour éviter que le filtrage linéaire ne fasse apparaître la marge
+	 */
+	public TextureAtlas(GLGame glGame, String[] fileNames, int maxPageSize, int padding, boolean bleed){
+		int count= fileNames.length;
+		this.regions= new HashMap<String, TextureRegion>(count * 2);
+		this.fileIO= glGame.getFileIO();
+		this.fileNames= fileNames.clone();
+		this.bleed= bleed ? padding : 0;
+		//décodage de toutes les images
+		Bitmap[] images= new Bitmap[count];
+		int[] widths= new int[count];
+		int[] heights= new int[count];
+		for(int i= 0; i < count; i++){
+			images[i]= decode(fileIO, fileNames[i]);
+			widths[i]= images[i].getWidth();
+			heights[i]= images[i].getHeight();
+		}
+		//placement des images
+		this.imagePages= new int[count];
+		this.xs= new int[count];
+		this.ys= new int[count];
+		TexturePacker packer= new TexturePacker(maxPageSize, padding);
+		int numPages= packer.pack(widths, heights, imagePages, xs, ys);
+		this.pageWidths= new int[numPages];
+		this.pageHeights= new int[numPages];
+		//dessin des pages puis envoi vers le GPU, l'image de chaque page est libérée après l'envoi
+		this.pages= new ArrayList<Texture>(numPages);
+		for(int page= 0; page < numPages; page++){
+			pageWidths[page]= packer.getPageWidth(page);
+			pageHeights[page]= packer.getPageHeight(page);
+			pages.add(new Texture(glGame, "atlas:" + fileNames[0] + "#" + page, this, page, drawPage(page, images)));
+		}
+		//création des régions
+		for(int i= 0; i < count; i++){
+			images[i].recycle();
+			regions.put(fileNames[i], new TextureRegion(pages.get(imagePages[i]), xs[i], ys[i], widths[i], heights[i]));
+		}
+	}
+
+	/**
+	 * Redessine l'image d'une page en décodant à nouveau ses images, sans appel OpenGL
+	 * Appelé pour recharger la page après une perte du contexte OpenGL, éventuellement par un thread de fond
+	 * @param page : indice de la page
+	 * @return image de la page, à libérer après l'envoi vers le GPU
+	 */
+	Bitmap renderPage(int page){
+		Bitmap[] images= new Bitmap[fileNames.length];
+		try{
+			for(int i= 0; i < fileNames.length; i++){
+				if(imagePages[i] == page) images[i]= decode(fileIO, fileNames[i]);
+			}
+			return drawPage(page, images);
+		}finally{
+			for(int i= 0; i < images.length; i++){
+				if(images[i] != null) images[i].recycle();
+			}
+		}
+	}
+
+	/**
+	 * Dessine les images d'une page dans une nouvelle image
+	 * @param page : indice de la page
+	 * @param images : images décodées, seules celles de la page sont utilisées
+	 * @return image de la page
+	 */
+	private Bitmap drawPage(int page, Bitmap[] images){
+		Bitmap pageBitmap= Bitmap.createBitmap(pageWidths[page], pageHeights[page], Config.ARGB_8888);
+		Canvas canvas= new Canvas(pageBitmap);
+		Rect src= new Rect();
+		Rect dst= new Rect();
+		for(int i= 0; i < images.length; i++){
+			if(imagePages[i] != page) continue;
+			draw(canvas, images[i], xs[i], ys[i], bleed, src, dst);
+		}
+		return pageBitmap;
+	}
+
+	/**
+	 * Décode une image à partir d'un asset
+	 * @param fileIO : gestionnaire de fichier
+	 * @param fileName : nom du fichier image
+	 * @return l'image décodée
+	 */
+	private static Bitmap decode(FileIO fileIO, String fileName){
+		InputStream in= null;
+		try{
+			in= fileIO.readAsset(fileName);
+			Bitmap bitmap= BitmapFactory.decodeStream(in);
+			if(bitmap == null) throw new RuntimeException("Couldn't decode image '" + fileName + "'");
+			return bitmap;
+		}catch(IOException e){
+			throw new RuntimeException("Couldn't load image '" + fileName + "'", e);
+		}finally{
+			if(in != null) try{
+				in.close();
+			}catch(IOException e){}
+		}
+	}
+
+	/**
+	 * Dessine une image dans une page, en étirant éventuellement ses bords dans la marge
+	 * @param canvas : canvas de la page
+	 * @param image : image à dessiner
+	 * @param x : abcisse du coin supérieur gauche de l'image dans la page
+	 * @param y : ordonnée du coin supérieur gauche de l'image dans la page
+	 * @param bleed : nombre de pixels de bord à remplir autour de l'image
+	 * @param src : instance de Rect à réutiliser
+	 * @param dst : instance de Rect à réutiliser
+	 */
+	private static void draw(Canvas canvas, Bitmap image, int x, int y, int bleed, Rect src, Rect dst){
+		int width= image.getWidth();
+		int height= image.getHeight();
+		//les rectangles source et destination évitent toute mise à l'échelle due à la densité des bitmaps
+		drawPart(canvas, image, 0, 0, width, height, x, y, x + width, y + height, src, dst);
+		if(bleed == 0) return;
+		//bords : la première ou dernière ligne/colonne est étirée sur la marge
+		drawPart(canvas, image, 0, 0, 1, height, x - bleed, y, x, y + height, src, dst);
+		drawPart(canvas, image, width - 1, 0, width, height, x + width, y, x + width + bleed, y + height, src, dst);
+		drawPart(canvas, image, 0, 0, width, 1, x, y - bleed, x + width, y, src, dst);
+		drawPart(canvas, image, 0, height - 1, width, height, x, y + height, x + width, y + height + bleed, src, dst);
+		//coins
+		drawPart(canvas, image, 0, 0, 1, 1, x - bleed, y - bleed, x, y, src, dst);
+		drawPart(canvas, image, width - 1, 0, width, 1, x + width, y - bleed, x + width + bleed, y, src, dst);
+		drawPart(canvas, image, 0, height - 1, 1, height, x - bleed, y + height, x, y + height + bleed, src, dst);
+		drawPart(canvas, image, width - 1, height - 1, width, height, x + width, y + height, x + width + bleed, y + height + bleed, src, dst);
+	}
+
+	/**
+	 * Dessine une partie d'une image dans un rectangle de la page
+	 */
+	private static void drawPart(Canvas canvas, Bitmap image, int srcLeft, int srcTop, int srcRight, int srcBottom, int dstLeft, int dstTop, int dstRight, int dstBottom, Rect src, Rect dst){
+		src.left= srcLeft;
+		src.top= srcTop;
+		src.right= srcRight;
+		src.bottom= srcBottom;
+		dst.left= dstLeft;
+		dst.top= dstTop;
+		dst.right= dstRight;
+		dst.bottom= dstBottom;
+		canvas.drawBitmap(image, src, dst, null);
+	}
+
+	/**
+	 * Donne la région d'une image de l'atlas
+	 * @param fileName : nom du fichier de l'image
+	 * @return la région, null si l'image n'est pas dans l'atlas
+	 */
+	public TextureRegion getRegion(String fileName){
+		return regions.get(fileName);
+	}
+
+	/**
+	 * Donne toutes les régions de l'atlas
+	 * @return régions indexées par nom de fichier
+	 */
+	public Map<String, TextureRegion> getRegions(){
+		return regions;
+	}
+
+	/**
+	 * Donne les textures des pages de l'atlas
+	 * @return textures des pages
+	 */
+	public List<Texture> getPages(){
+		return pages;
+	}
+
+	/**
+	 * Recharge les pages après une perte du contexte OpenGL
+	 */
+	public void reload(){
+		for(int i= 0; i < pages.size(); i++){
+			pages.get(i).reload();
+		}
+	}
+
+	/**
+	 * Efface les pages de la mémoire GPU
+	 */
+	public void dispose(){
+		for(int i= 0; i < pages.size(); i++){
+			pages.get(i).dispose();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,307 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import yoan.game.framework.modules.fileio.FileIO;
+import yoan.game.framework.modules.game.gl.GLGame;
+import yoan.game.framework.modules.graphics.Graphics.PixmapFormat;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapFactory.Options;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Process;
+
+/**
+ * Chargement asynchrone des textures
+ * Les images sont décodées par des threads de fond, puis envoyées au GPU par le thread de rendu
+ * dans la limite d'un budget de temps par frame, pour que l'écran de chargement reste animé
+ * @author yoan
+ */
+public class TextureLoader {
+	/** Nombre maximum d'images gardées pour être réutilisées par les décodages suivants */
+	static final int MAX_POOLED_BITMAPS= 4;
+	/** L'instance du jeu */
+	final GLGame glGame;
+	/** Gestionnaire de fichier */
+	final FileIO fileIO;
+	/** Threads de décodage */
+	final ExecutorService executor;
+	/** Chargements décodés en attente d'envoi vers le GPU */
+	final ConcurrentLinkedQueue<Handle> decoded= new ConcurrentLinkedQueue<Handle>();
+	/** Images déjà envoyées au GPU, réutilisables pour décoder une image de même taille */
+	final ConcurrentLinkedQueue<Bitmap> bitmapPool= new ConcurrentLinkedQueue<Bitmap>();
+	/** Nombre de chargements non terminés */
+	final AtomicInteger pending= new AtomicInteger();
+	/** Budget de temps d'envoi vers le GPU par frame en nanosecondes */
+	long uploadBudget= 4000000;
+
+	/**
+	 * Chargement d'une texture, permet de suivre son avancement
+	 */
+	public static class Handle {
+		/** Nom du fichier image de la texture */
+		final String fileName;
+		/** Format des pixels de la texture */
+		final PixmapFormat format;
+		/** Indique si le décodage en 16 bits utilise le tramage */
+		final boolean dither;
+		/** Indique si la chaîne de mipmaps est générée */
+		final boolean mipmapped;
+		/** Image décodée en attente d'envoi vers le GPU */
+		Bitmap bitmap;
+		/** Erreur survenue lors du décodage */
+		Throwable error;
+		/** Texture chargée, null tant que le chargement n'est pas terminé */
+		volatile Texture texture;
+
+		/**
+		 * Constructeur avec paramètres
+		 * @param fileName : nom du fichier image de la texture
+		 * @param format : format des pixels de la texture
+		 * @param dither : indique si le décodage en 16 bits utilise le tramage
+		 * @param mipmapped : indique si la chaîne de mipmaps est générée
+		 */
+		Handle(String fileName, PixmapFormat format, boolean dither, boolean mipmapped){
+			this.fileName= fileName;
+			this.format= format;
+			this.dither= dither;
+			this.mipmapped= mipmapped;
+		}
+
+		/**
+		 * Indique si la texture est chargée dans le GPU
+		 * @return true si la texture est utilisable
+		 */
+		public boolean isLoaded(){
+			return texture != null;
+		}
+
+		/**
+		 * Donne la texture chargée
+		 * @return texture, null tant que le chargement n'est pas terminé
+		 */
+		public Texture getTexture(){
+			return texture;
+		}
+
+		/**
+		 * Donne le nom du fichier image de la texture
+		 * @return nom du fichier
+		 */
+		public String getFileName(){
+			return fileName;
+		}
+	}
+
+	/**
+	 * Constructeur avec paramètres
+	 * Un thread de décodage par coeur, en gardant un coeur pour le thread de rendu
+	 * @param glGame : l'instance du jeu
+	 */
+	public TextureLoader(GLGame glGame){
+		this.glGame= glGame;
+		this.fileIO= glGame.getFileIO();
+		int threads= Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		this.executor= Executors.newFixedThreadPool(threads, new ThreadFactory(){
+			/** Numéro du prochain thread créé */
+			int count;
+
+			public Thread newThread(final Runnable runnable){
+				Thread thread= new Thread(new Runnable(){
+					public void run(){
+						//le décodage ne doit pas ralentir le rendu
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, "TextureLoader-" + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Lance le chargement asynchrone d'une texture ARGB8888 sans mipmaps
+	 * @param fileName : nom du fichier image de la texture
+	 * @return chargement de la texture
+	 */
+	public Handle load(String fileName){
+		return load(fileName, PixmapFormat.ARGB8888, false, false);
+	}
+
+	/**
+	 * Lance le chargement asynchrone d'une texture
+	 * Les textures ETC1 n'ont pas besoin d'être décodées : elles sont directement envoyées par le thread de rendu
+	 * @param fileName : nom du fichier image de la texture
+	 * @param format : format des pixels de la texture
+	 * @param dither : indique si l'image est tramée lors du passage en 16 bits
+	 * @param mipmapped : indique si la chaîne de mipmaps est générée au chargement
+	 * @return chargement de la texture
+	 */
+	public Handle load(String fileName, PixmapFormat format, boolean dither, boolean mipmapped){
+		final Handle handle= new Handle(fileName, format, dither, mipmapped);
+		pending.incrementAndGet();
+		if(Texture.isETC1(fileName)){
+			decoded.add(handle);
+			return handle;
+		}
+		executor.execute(new Runnable(){
+			public void run(){
+				try{
+					handle.bitmap= decode(handle);
+				}catch(Throwable e){
+					handle.error= e;
+				}
+				//la file concurrente publie le résultat vers le thread de rendu
+				decoded.add(handle);
+			}
+		});
+		return handle;
+	}
+
+	/**
+	 * Décode l'image d'une texture, en réutilisant si possible une image du pool (Android 3.0+)
+	 * @param handle : chargement de la texture
+	 * @return image décodée au format demandé
+	 * @throws IOException : si le fichier ne peut pas être lu
+	 */
+	private Bitmap decode(Handle handle) throws IOException{
+		Options options= new Options();
+		options.inPreferredConfig= Texture.getConfig(handle.format);
+		options.inDither= handle.dither;
+		if(VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB){
+			//lecture de la taille de l'image pour trouver une image réutilisable
+			options.inJustDecodeBounds= true;
+			decodeStream(handle.fileName, options);
+			options.inJustDecodeBounds= false;
+			options.inMutable= true;
+			options.inBitmap= takePooledBitmap(options.outWidth, options.outHeight, options.inPreferredConfig);
+		}
+		Bitmap bitmap;
+		try{
+			bitmap= decodeStream(handle.fileName, options);
+		}catch(IllegalArgumentException e){
+			if(options.inBitmap == null) throw e;
+			//l'image du pool n'est pas compatible avec ce fichier
+			options.inBitmap.recycle();
+			options.inBitmap= null;
+			bitmap= decodeStream(handle.fileName, options);
+		}
+		if(bitmap == null) throw new IOException("Couldn't decode texture '" + handle.fileName + "'");
+		return Texture.convert(bitmap, options.inPreferredConfig);
+	}
+
+	/**
+	 * Décode un asset image
+	 * @param fileName : nom du fichier image
+	 * @param options : options de décodage
+	 * @return image décodée, null si seule la taille est lue
+	 * @throws IOException : si le fichier ne peut pas être lu
+	 */
+	private Bitmap decodeStream(String fileName, Options options) throws IOException{
+		InputStream in= null;
+		try{
+			in= fileIO.readAsset(fileName);
+			return BitmapFactory.decodeStream(in, null, options);
+		}finally{
+			if(in != null) try{
+				in.close();
+			}catch(IOException e){}
+		}
+	}
+
+	/**
+	 * Retire du pool une image de même taille et de même format
+	 * @param width : largeur de l'image à décoder
+	 * @param height : hauteur de l'image à décoder
+	 * @param config : format de l'image à décoder
+	 * @return image réutilisable, null si aucune ne convient
+	 */
+	private Bitmap takePooledBitmap(int width, int height, Config config){
+		for(Bitmap bitmap : bitmapPool){
+			if(bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config && bitmapPool.remove(bitmap)) return bitmap;
+		}
+		return null;
+	}
+
+	/**
+	 * Envoie vers le GPU les textures décodées, dans la limite du budget de temps par frame
+	 * Au moins une texture est envoyée par appel pour que le chargement avance toujours
+	 * Doit être appelé par le thread de rendu, GLGame le fait à chaque frame
+	 */
+	public void update(){
+		long start= System.nanoTime();
+		Handle handle;
+		while((handle= decoded.poll()) != null){
+			upload(handle);
+			if(System.nanoTime() - start >= uploadBudget) break;
+		}
+	}
+
+	/**
+	 * Crée la texture d'un chargement décodé
+	 * @param handle : chargement de la texture
+	 */
+	private void upload(Handle handle){
+		pending.decrementAndGet();
+		//les erreurs de décodage sont remontées sur le thread de rendu, comme pour un chargement synchrone
+		if(handle.error != null) throw new RuntimeException("Couldn't load texture '" + handle.fileName + "'", handle.error);
+		if(handle.bitmap == null){
+			handle.texture= new Texture(glGame, handle.fileName, handle.format, handle.dither, handle.mipmapped);
+			return;
+		}
+		Bitmap bitmap= handle.bitmap;
+		handle.bitmap= null;
+		handle.texture= new Texture(glGame, handle.fileName, handle.format, handle.dither, handle.mipmapped, bitmap);
+		//l'image est gardée pour un prochain décodage si elle est réutilisable
+		if(VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB && bitmap.isMutable() && bitmapPool.size() < MAX_POOLED_BITMAPS){
+			bitmapPool.add(bitmap);
+		}else{
+			bitmap.recycle();
+		}
+	}
+
+	/**
+	 * Indique si tous les chargements sont terminés
+	 * @return true si aucune texture n'est en attente
+	 */
+	public boolean isIdle(){
+		return pending.get() == 0;
+	}
+
+	/**
+	 * Donne le nombre de textures en cours de chargement
+	 * @return nombre de chargements non terminés
+	 */
+	public int getPendingCount(){
+		return pending.get();
+	}
+
+	/**
+	 * Modifie le budget de temps d'envoi vers le GPU par frame
+	 * @param milliseconds : budget en millisecondes
+	 */
+	public void setUploadBudget(float milliseconds){
+		if(milliseconds < 0) throw new IllegalArgumentException("Upload budget must be positive");
+		this.uploadBudget= (long) (milliseconds * 1000000);
+	}
+
+	/**
+	 * Arrête les threads de décodage et libère les images du pool
+	 */
+	public void dispose(){
+		executor.shutdownNow();
+		Bitmap bitmap;
+		while((bitmap= bitmapPool.poll()) != null){
+			bitmap.recycle();
+		}
+	}
+}
\ No newline at end of file
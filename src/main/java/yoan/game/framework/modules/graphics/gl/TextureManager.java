@@ -0,0 +1,224 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import yoan.game.framework.modules.game.gl.GLGame;
+import yoan.game.framework.modules.graphics.Graphics.PixmapFormat;
+
+/**
+ * Cache des textures par nom de fichier avec comptage des références
+ * Les textures qui ne sont plus référencées restent en mémoire pour être réutilisées,
+ * jusqu'à ce que le budget de mémoire GPU soit dépassé : elles sont alors libérées de la moins récemment utilisée à la plus récente
+ * @author yoan
+ */
+public class TextureManager {
+	/** L'instance du jeu */
+	final GLGame glGame;
+	/** Textures chargées, dans l'ordre de la moins récemment utilisée à la plus récente */
+	final LinkedHashMap<String, Entry> entries= new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	/** Budget de mémoire GPU en bytes */
+	long budget;
+	/** Mémoire GPU utilisée par les textures chargées en bytes */
+	long usedBytes;
+	/** Nombre de textures trouvées dans le cache depuis la dernière remise à zéro des compteurs */
+	public int hits;
+	/** Nombre de textures chargées depuis la dernière remise à zéro des compteurs */
+	public int misses;
+	/** Nombre de textures libérées pour respecter le budget depuis la dernière remise à zéro des compteurs */
+	public int evictions;
+	/** Libère les textures non référencées au début de la reconstruction après une perte du contexte, pour ne pas les décoder inutilement */
+	final Runnable trimBeforeRebuild= new Runnable(){
+		public void run(){
+			trim();
+		}
+	};
+
+	/**
+	 * Texture chargée et son nombre de références
+	 */
+	static class Entry {
+		/** Texture chargée */
+		final Texture texture;
+		/** Nombre d'utilisateurs de la texture */
+		int references;
+
+		/**
+		 * Constructeur avec paramètres
+		 * @param texture : texture chargée
+		 */
+		Entry(Texture texture){
+			this.texture= texture;
+		}
+	}
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param glGame : l'instance du jeu
+	 * @param budget : budget de mémoire GPU en bytes pour l'ensemble des textures
+	 */
+	public TextureManager(GLGame glGame, long budget){
+		this.glGame= glGame;
+		setBudget(budget);
+		glGame.getGLGraphics().getResources().addRebuildListener(trimBeforeRebuild);
+	}
+
+	/**
+	 * Donne une texture ARGB8888 sans mipmaps et ajoute une référence
+	 * @param fileName : nom du fichier image de la texture
+	 * @return texture chargée ou trouvée dans le cache
+	 */
+	public Texture acquire(String fileName){
+		return acquire(fileName, PixmapFormat.ARGB8888, false, false);
+	}
+
+	/**
+	 * Donne une texture et ajoute une référence, à libérer par release quand elle n'est plus utilisée
+	 * Les paramètres de chargement ne sont utilisés que si la texture n'est pas déjà dans le cache
+	 * @param fileName : nom du fichier image de la texture
+	 * @param format : format des pixels de la texture
+	 * @param dither : indique si l'image est tramée lors du passage en 16 bits
+	 * @param mipmapped : indique si la chaîne de mipmaps est générée au chargement
+	 * @return texture chargée ou trouvée dans le cache
+	 */
+	public Texture acquire(String fileName, PixmapFormat format, boolean dither, boolean mipmapped){
+		Entry entry= entries.get(fileName);
+		if(entry != null){
+			hits++;
+		}else{
+			misses++;
+			entry= new Entry(new Texture(glGame, fileName, format, dither, mipmapped));
+			entries.put(fileName, entry);
+			usedBytes+= entry.texture.getByteSize();
+		}
+		entry.references++;
+		//la nouvelle texture peut faire dépasser le budget
+		evict();
+		return entry.texture;
+	}
+
+	/**
+	 * Retire une référence à une texture
+	 * La texture reste dans le cache tant que le budget le permet
+	 * @param fileName : nom du fichier image de la texture
+	 */
+	public void release(String fileName){
+		Entry entry= entries.get(fileName);
+		if(entry == null || entry.references == 0) throw new IllegalStateException("Texture '" + fileName + "' is not acquired");
+		entry.references--;
+		if(entry.references == 0) evict();
+	}
+
+	/**
+	 * Retire une référence à une texture
+	 * @param texture : texture obtenue par acquire
+	 */
+	public void release(Texture texture){
+		release(texture.getFileName());
+	}
+
+	/**
+	 * Libère les textures non référencées les moins récemment utilisées jusqu'à respecter le budget
+	 * Les textures référencées ne sont jamais libérées, le budget peut donc être dépassé
+	 */
+	private void evict(){
+		Iterator<Entry> iterator= entries.values().iterator();
+		while(usedBytes > budget && iterator.hasNext()){
+			Entry entry= iterator.next();
+			if(entry.references > 0) continue;
+			iterator.remove();
+			usedBytes-= entry.texture.getByteSize();
+			entry.texture.dispose();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Modifie le budget de mémoire GPU, les textures en trop sont libérées
+	 * @param budget : budget en bytes
+	 */
+	public void setBudget(long budget){
+		if(budget < 0) throw new IllegalArgumentException("Budget must be positive");
+		this.budget= budget;
+		evict();
+	}
+
+	/**
+	 * Donne le budget de mémoire GPU
+	 * @return budget en bytes
+	 */
+	public long getBudget(){
+		return budget;
+	}
+
+	/**
+	 * Donne la mémoire GPU utilisée par les textures du cache
+	 * @return estimation en bytes
+	 */
+	public long getUsedBytes(){
+		return usedBytes;
+	}
+
+	/**
+	 * Donne le nombre de textures dans le cache, référencées ou non
+	 * @return nombre de textures
+	 */
+	public int size(){
+		return entries.size();
+	}
+
+	/**
+	 * Remet à zéro les compteurs du cache
+	 */
+	public void resetStats(){
+		hits= 0;
+		misses= 0;
+		evictions= 0;
+	}
+
+	/**
+	 * Libère toutes les textures non référencées
+	 */
+	public void trim(){
+		Iterator<Entry> iterator= entries.values().iterator();
+		while(iterator.hasNext()){
+			Entry entry= iterator.next();
+			if(entry.references > 0) continue;
+			iterator.remove();
+			usedBytes-= entry.texture.getByteSize();
+			entry.texture.dispose();
+		}
+	}
+
+	/**
+	 * Recharge les textures du cache après une perte du contexte OpenGL
+	 * Les textures non référencées sont déjà libérées par le GLResourceRegistry avant la reconstruction,
+	 * les textures déjà recréées par le registre ne sont pas rechargées une seconde fois
+	 */
+	public void reload(){
+		Iterator<Entry> iterator= entries.values().iterator();
+		usedBytes= 0;
+		while(iterator.hasNext()){
+			Entry entry= iterator.next();
+			if(entry.references == 0){
+				iterator.remove();
+				entry.texture.dispose();
+				continue;
+			}
+			entry.texture.reload();
+			usedBytes+= entry.texture.getByteSize();
+		}
+	}
+
+	/**
+	 * Libère toutes les textures, référencées ou non
+	 */
+	public void dispose(){
+		glGame.getGLGraphics().getResources().removeRebuildListener(trimBeforeRebuild);
+		for(Entry entry : entries.values()){
+			entry.texture.dispose();
+		}
+		entries.clear();
+		usedBytes= 0;
+	}
+}
\ No newline at end of file
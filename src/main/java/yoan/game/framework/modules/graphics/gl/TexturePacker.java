@@ -0,0 +1,273 @@
+package yoan.game.framework.modules.graphics.gl;
+
+/**
+ * Algorithme de placement de rectangles dans des pages carrées (skyline, placement le plus bas puis le plus à gauche)
+ * Ne dépend pas d'Android : les images sont réduites à leurs dimensions
+ * @author yoan
+ */
+public class TexturePacker {
+	/** Taille maximum d'une page en pixel (puissance de 2) */
+	final int maxPageSize;
+	/** Marge en pixel autour de chaque image */
+	final int padding;
+	/** Nombre de pages utilisées par le dernier placement */
+	int numPages;
+	/** Largeur utilisée de chaque page */
+	int[] pageWidths= new int[4];
+	/** Hauteur utilisée de chaque page */
+	int[] pageHeights= new int[4];
+	/** Abcisse de début de chaque segment de la ligne d'horizon de la page courante */
+	int[] skylineX;
+	/** Hauteur de chaque segment de la ligne d'horizon de la page courante */
+	int[] skylineY;
+	/** Largeur de chaque segment de la ligne d'horizon de la page courante */
+	int[] skylineWidth;
+	/** Nombre de segments de la ligne d'horizon de la page courante */
+	int skylineSize;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param maxPageSize : taille maximum d'une page en pixel, puissance de 2
+	 * @param padding : marge en pixel autour de chaque image, pour éviter que le filtrage ne mélange deux images
+	 */
+	public TexturePacker(int maxPageSize, int padding){
+		if(maxPageSize <= 0 || (maxPageSize & (maxPageSize - 1)) != 0) throw new IllegalArgumentException("Page size must be a power of two");
+		if(padding < 0) throw new IllegalArgumentException("Padding must be positive");
+		this.maxPageSize= maxPageSize;
+		this.padding= padding;
+		this.skylineX= new int[16];
+		this.skylineY= new int[16];
+		this.skylineWidth= new int[16];
+	}
+
+	/**
+	 * Place des images dans le moins de pages possible
+	 * Les images sont traitées de la plus haute à la plus basse, les positions renvoyées excluent la marge
+	 * @param widths : largeur de chaque image
+	 * @param heights : hauteur de chaque image
+	 * @param pages : reçoit la page de chaque image
+	 * @param xs : reçoit l'abcisse du coin supérieur gauche de chaque image dans sa page
+	 * @param ys : reçoit l'ordonnée du coin supérieur gauche de chaque image dans sa page
+	 * @return le nombre de pages utilisées
+	 */
+	public int pack(int[] widths, int[] heights, int[] pages, int[] xs, int[] ys){
+		int count= widths.length;
+		int[] order= sortByHeight(heights);
+		numPages= 0;
+		int placed= 0;
+		boolean[] done= new boolean[count];
+		//on remplit une page à la fois avec toutes les images qui y rentrent encore
+		while(placed < count){
+			if(numPages == pageWidths.length){
+				pageWidths= grow(pageWidths);
+				pageHeights= grow(pageHeights);
+			}
+			resetSkyline();
+			int page= numPages++;
+			int usedWidth= 0;
+			int usedHeight= 0;
+			int placedInPage= 0;
+			for(int i= 0; i < count; i++){
+				int image= order[i];
+				if(done[image]) continue;
+				int cellWidth= widths[image] + 2 * padding;
+				int cellHeight= heights[image] + 2 * padding;
+				if(cellWidth > maxPageSize || cellHeight > maxPageSize) throw new IllegalArgumentException("Image " + image + " is bigger than the page size");
+				if(!insert(cellWidth, cellHeight, xs, ys, image)) continue;
+				pages[image]= page;
+				done[image]= true;
+				placed++;
+				placedInPage++;
+				usedWidth= Math.max(usedWidth, xs[image] + cellWidth);
+				usedHeight= Math.max(usedHeight, ys[image] + cellHeight);
+				//on exclut la marge des positions renvoyées
+				xs[image]+= padding;
+				ys[image]+= padding;
+			}
+			if(placedInPage == 0) throw new IllegalStateException("Unable to place images");
+			pageWidths[page]= nextPowerOfTwo(usedWidth);
+			pageHeights[page]= nextPowerOfTwo(usedHeight);
+		}
+		return numPages;
+	}
+
+	/**
+	 * Donne la largeur d'une page après placement, arrondie à la puissance de 2 supérieure
+	 * @param page : indice de la page
+	 * @return largeur en pixel
+	 */
+	public int getPageWidth(int page){
+		return pageWidths[page];
+	}
+
+	/**
+	 * Donne la hauteur d'une page après placement, arrondie à la puissance de 2 supérieure
+	 * @param page : indice de la page
+	 * @return hauteur en pixel
+	 */
+	public int getPageHeight(int page){
+		return pageHeights[page];
+	}
+
+	/**
+	 * Réinitialise la ligne d'horizon pour une page vide
+	 */
+	private void resetSkyline(){
+		skylineX[0]= 0;
+		skylineY[0]= 0;
+		skylineWidth[0]= maxPageSize;
+		skylineSize= 1;
+	}
+
+	/**
+	 * Place un rectangle sur la ligne d'horizon de la page courante
+	 * @param width : largeur du rectangle
+	 * @param height : hauteur du rectangle
+	 * @param xs : reçoit l'abcisse du rectangle
+	 * @param ys : reçoit l'ordonnée du rectangle
+	 * @param image : indice où écrire la position
+	 * @return false si le rectangle ne rentre pas dans la page
+	 */
+	private boolean insert(int width, int height, int[] xs, int[] ys, int image){
+		int bestSegment= -1;
+		int bestY= Integer.MAX_VALUE;
+		int bestX= Integer.MAX_VALUE;
+		for(int i= 0; i < skylineSize; i++){
+			int y= fit(i, width, height);
+			if(y < 0) continue;
+			//le plus bas, puis le plus à gauche
+			if(y < bestY || (y == bestY && skylineX[i] < bestX)){
+				bestSegment= i;
+				bestY= y;
+				bestX= skylineX[i];
+			}
+		}
+		if(bestSegment < 0) return false;
+		xs[image]= bestX;
+		ys[image]= bestY;
+		addSegment(bestSegment, bestX, bestY + height, width);
+		return true;
+	}
+
+	/**
+	 * Calcule la hauteur à laquelle un rectangle peut être posé à partir d'un segment
+	 * @param segment : segment de départ
+	 * @param width : largeur du rectangle
+	 * @param height : hauteur du rectangle
+	 * @return ordonnée du rectangle, -1 s'il ne rentre pas
+	 */
+	private int fit(int segment, int width, int height){
+		int x= skylineX[segment];
+		if(x + width > maxPageSize) return -1;
+		int y= 0;
+		int remaining= width;
+		int i= segment;
+		//le rectangle repose sur le segment le plus haut qu'il recouvre
+		while(remaining > 0){
+			y= Math.max(y, skylineY[i]);
+			if(y + height > maxPageSize) return -1;
+			remaining-= skylineWidth[i];
+			i++;
+		}
+		return y;
+	}
+
+	/**
+	 * Ajoute un segment à la ligne d'horizon et raccourcit ou supprime les segments recouverts
+	 * @param index : indice du nouveau segment
+	 * @param x : abcisse du segment
+	 * @param y : hauteur du segment
+	 * @param width : largeur du segment
+	 */
+	private void addSegment(int index, int x, int y, int width){
+		if(skylineSize == skylineX.length){
+			skylineX= grow(skylineX);
+			skylineY= grow(skylineY);
+			skylineWidth= grow(skylineWidth);
+		}
+		System.arraycopy(skylineX, index, skylineX, index + 1, skylineSize - index);
+		System.arraycopy(skylineY, index, skylineY, index + 1, skylineSize - index);
+		System.arraycopy(skylineWidth, index, skylineWidth, index + 1, skylineSize - index);
+		skylineX[index]= x;
+		skylineY[index]= y;
+		skylineWidth[index]= width;
+		skylineSize++;
+		int end= x + width;
+		//les segments suivants sont recouverts totalement ou partiellement
+		int i= index + 1;
+		while(i < skylineSize && skylineX[i] < end){
+			int segmentEnd= skylineX[i] + skylineWidth[i];
+			if(segmentEnd <= end){
+				removeSegment(i);
+			}else{
+				skylineWidth[i]= segmentEnd - end;
+				skylineX[i]= end;
+				break;
+			}
+		}
+		//fusion des segments voisins de même hauteur
+		for(i= 0; i < skylineSize - 1;){
+			if(skylineY[i] == skylineY[i + 1]){
+				skylineWidth[i]+= skylineWidth[i + 1];
+				removeSegment(i + 1);
+			}else{
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Supprime un segment de la ligne d'horizon
+	 * @param index : indice du segment
+	 */
+	private void removeSegment(int index){
+		int moved= skylineSize - index - 1;
+		System.arraycopy(skylineX, index + 1, skylineX, index, moved);
+		System.arraycopy(skylineY, index + 1, skylineY, index, moved);
+		System.arraycopy(skylineWidth, index + 1, skylineWidth, index, moved);
+		skylineSize--;
+	}
+
+	/**
+	 * Trie les indices des images par hauteur décroissante (tri par insertion, peu d'images à trier)
+	 * @param heights : hauteur de chaque image
+	 * @return indices triés
+	 */
+	private static int[] sortByHeight(int[] heights){
+		int[] order= new int[heights.length];
+		for(int i= 0; i < order.length; i++){
+			int image= i;
+			int j= i;
+			while(j > 0 && heights[order[j - 1]] < heights[image]){
+				order[j]= order[j - 1];
+				j--;
+			}
+			order[j]= image;
+		}
+		return order;
+	}
+
+	/**
+	 * Donne la puissance de 2 supérieure ou égale
+	 * @param value : valeur positive
+	 * @return puissance de 2
+	 */
+	static int nextPowerOfTwo(int value){
+		int power= 1;
+		while(power < value){
+			power<<= 1;
+		}
+		return power;
+	}
+
+	/**
+	 * Double la taille d'un tableau
+	 * @param array : tableau à agrandir
+	 * @return nouveau tableau contenant les anciennes valeurs
+	 */
+	private static int[] grow(int[] array){
+		int[] newArray= new int[array.length * 2];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+}
\ No newline at end of file
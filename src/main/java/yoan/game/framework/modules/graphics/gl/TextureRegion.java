@@ -11,6 +11,8 @@ public class TextureRegion {
 	public final float u2, v2;
 	/** Texture atlas */
 	public final Texture texture;
+	/** Coordonnées de texture des 4 coins empaquetées en short (cf. Vertices.packTexCoords) */
+	final int packedU1V1, packedU2V1, packedU2V2, packedU1V2;
 
 	/**
 	 * Constructeur avec paramètres
@@ -26,5 +28,30 @@ public class TextureRegion {
 		this.u2= this.u1 + width / texture.width;
 		this.v2= this.v1 + height / texture.height;
 		this.texture= texture;
+		//pré-calcul pour les vertices empaquetés du SpriteBatcher
+		this.packedU1V1= Vertices.packTexCoords(u1, v1);
+		this.packedU2V1= Vertices.packTexCoords(u2, v1);
+		this.packedU2V2= Vertices.packTexCoords(u2, v2);
+		this.packedU1V2= Vertices.packTexCoords(u1, v2);
+	}
+
+	/**
+	 * Constructeur à partir de coordonnées de texture déjà normalisées
+	 * @param u1 : abcisse [0-1] du coin supérieur gauche
+	 * @param v1 : ordonnée [0-1] du coin supérieur gauche
+	 * @param u2 : abcisse [0-1] du coin inférieur droit
+	 * @param v2 : ordonnée [0-1] du coin inférieur droit
+	 * @param texture : texture atlas
+	 */
+	TextureRegion(float u1, float v1, float u2, float v2, Texture texture){
+		this.u1= u1;
+		this.v1= v1;
+		this.u2= u2;
+		this.v2= v2;
+		this.texture= texture;
+		this.packedU1V1= Vertices.packTexCoords(u1, v1);
+		this.packedU2V1= Vertices.packTexCoords(u2, v1);
+		this.packedU2V2= Vertices.packTexCoords(u2, v2);
+		this.packedU1V2= Vertices.packTexCoords(u1, v2);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import java.util.Arrays;
+
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * Carte de tuiles découpée en blocs carrés
+ * Les vertices d'un bloc sont construits une seule fois, puis seuls les blocs visibles par la caméra sont dessinés :
+ * le coût d'affichage ne dépend pas de la taille de la carte
+ * La tuile (0,0) a son coin inférieur gauche à l'origine du jeu
+ * @author yoan
+ */
+public class TileMap {
+	/** Identifiant d'une tuile vide */
+	public static final short EMPTY= -1;
+	/** Accès Android à OpenGL ES 1.0 */
+	final GLGraphics glGraphics;
+	/** Largeur de la carte en tuiles */
+	public final int width;
+	/** Hauteur de la carte en tuiles */
+	public final int height;
+	/** Taille d'une tuile dans le jeu */
+	public final float tileSize;
+	/** Taille d'un bloc en tuiles */
+	public final int chunkSize;
+	/** Identifiant de chaque tuile, ligne par ligne en partant du bas */
+	final short[] tiles;
+	/** Régions de la texture pour chaque identifiant de tuile */
+	final TextureRegion[] tileset;
+	/** Texture commune à toutes les tuiles */
+	final Texture texture;
+	/** Nombre de blocs en largeur */
+	final int chunksX;
+	/** Nombre de blocs en hauteur */
+	final int chunksY;
+	/** Emplacement de cache de chaque bloc, -1 si ses vertices ne sont pas construits */
+	final int[] chunkSlots;
+	/** Indices des rectangles d'un bloc, partagés par les vertices de tous les emplacements de cache */
+	final Vertices quadIndices;
+	/** Vertices de chaque emplacement de cache */
+	final Vertices[] slotVertices;
+	/** Bloc stocké dans chaque emplacement de cache, -1 si libre */
+	final int[] slotChunks;
+	/** Nombre de tuiles non vides de chaque emplacement de cache */
+	final int[] slotTileCounts;
+	/** Dernière frame d'utilisation de chaque emplacement de cache */
+	final int[] slotLastFrames;
+	/** Compteur de frames pour l'éviction des blocs les moins récemment affichés */
+	int frame;
+	/** Nombre d'appels de rendu openGL ES depuis la dernière remise à zéro des compteurs */
+	public int renderCalls;
+	/** Nombre de blocs construits depuis la dernière remise à zéro des compteurs */
+	public int chunkBuilds;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param glGraphics : Accès Android à OpenGL ES 1.0
+	 * @param width : largeur de la carte en tuiles
+	 * @param height : hauteur de la carte en tuiles
+	 * @param tileSize : taille d'une tuile dans le jeu
+	 * @param chunkSize : taille d'un bloc en tuiles, 64 au maximum
+	 * @param maxCachedChunks : nombre de blocs gardés en mémoire, au moins le nombre de blocs visibles à l'écran
+	 * @param tileset : régions de la texture pour chaque identifiant de tuile, toutes dans la même texture
+	 */
+	public TileMap(GLGraphics glGraphics, int width, int height, float tileSize, int chunkSize, int maxCachedChunks, TextureRegion... tileset){
+		//4 vertices par tuile, les indices des vertices d'un bloc doivent tenir sur 16 bits
+		if(chunkSize < 1 || chunkSize > 64) throw new IllegalArgumentException("Chunk size must be between 1 and 64");
+		if(tileset.length == 0) throw new IllegalArgumentException("Tileset must not be empty");
+		this.texture= tileset[0].texture;
+		for(TextureRegion region : tileset){
+			if(region.texture != texture) throw new IllegalArgumentException("All tiles must share the same texture");
+		}
+		this.glGraphics= glGraphics;
+		this.width= width;
+		this.height= height;
+		this.tileSize= tileSize;
+		this.chunkSize= chunkSize;
+		this.tileset= tileset;
+		this.tiles= new short[width * height];
+		Arrays.fill(tiles, EMPTY);
+		this.chunksX= (width + chunkSize - 1) / chunkSize;
+		this.chunksY= (height + chunkSize - 1) / chunkSize;
+		this.chunkSlots= new int[chunksX * chunksY];
+		Arrays.fill(chunkSlots, -1);
+		this.slotVertices= new Vertices[maxCachedChunks];
+		this.slotChunks= new int[maxCachedChunks];
+		Arrays.fill(slotChunks, -1);
+		this.slotTileCounts= new int[maxCachedChunks];
+		this.slotLastFrames= new int[maxCachedChunks];
+		//tous les blocs ont la même topologie : un seul tableau d'indices envoyé une fois au GPU
+		this.quadIndices= new Vertices(glGraphics, 0, chunkSize * chunkSize * 6, GL10.GL_FLOAT, Vertices.NONE, Vertices.NONE, true);
+		short[] indices= SpriteBatcher.createQuadIndices(chunkSize * chunkSize);
+		quadIndices.setIndices(indices, 0, indices.length);
+	}
+
+	/**
+	 * Change une tuile de la carte, le bloc concerné sera reconstruit au prochain affichage
+	 * @param x : colonne de la tuile
+	 * @param y : ligne de la tuile en partant du bas
+	 * @param tileId : identifiant de la tuile dans le tileset ou EMPTY
+	 */
+	public void setTile(int x, int y, int tileId){
+		if(tileId != EMPTY && (tileId < 0 || tileId >= tileset.length)) throw new IllegalArgumentException("Unknown tile " + tileId);
+		tiles[y * width + x]= (short) tileId;
+		invalidateChunk((y / chunkSize) * chunksX + x / chunkSize);
+	}
+
+	/**
+	 * Remplace toutes les tuiles de la carte
+	 * @param tileIds : identifiants des tuiles, ligne par ligne en partant du bas
+	 */
+	public void setTiles(short[] tileIds){
+		if(tileIds.length != tiles.length) throw new IllegalArgumentException("Expected " + tiles.length + " tiles");
+		System.arraycopy(tileIds, 0, tiles, 0, tiles.length);
+		for(int i= 0; i < chunkSlots.length; i++){
+			invalidateChunk(i);
+		}
+	}
+
+	/**
+	 * Donne l'identifiant d'une tuile
+	 * @param x : colonne de la tuile
+	 * @param y : ligne de la tuile en partant du bas
+	 * @return identifiant de la tuile ou EMPTY
+	 */
+	public int getTile(int x, int y){
+		return tiles[y * width + x];
+	}
+
+	/**
+	 * Libère l'emplacement de cache d'un bloc pour forcer sa reconstruction
+	 * @param chunk : indice du bloc
+	 */
+	private void invalidateChunk(int chunk){
+		int slot= chunkSlots[chunk];
+		if(slot < 0) return;
+		chunkSlots[chunk]= -1;
+		slotChunks[slot]= -1;
+	}
+
+	/**
+	 * Dessine les blocs de la carte visibles par la caméra
+	 * @param camera : caméra utilisée pour l'affichage
+	 */
+	public void draw(Camera2D camera){
+		frame++;
+		//blocs couvrant la zone visible
+		float chunkWorldSize= chunkSize * tileSize;
+		int firstX= Math.max(0, (int) Math.floor(camera.getVisibleLeft() / chunkWorldSize));
+		int lastX= Math.min(chunksX - 1, (int) Math.floor(camera.getVisibleRight() / chunkWorldSize));
+		int firstY= Math.max(0, (int) Math.floor(camera.getVisibleBottom() / chunkWorldSize));
+		int lastY= Math.min(chunksY - 1, (int) Math.floor(camera.getVisibleTop() / chunkWorldSize));
+		if(firstX > lastX || firstY > lastY) return;
+
+		texture.bind();
+		for(int chunkY= firstY; chunkY <= lastY; chunkY++){
+			for(int chunkX= firstX; chunkX <= lastX; chunkX++){
+				int chunk= chunkY * chunksX + chunkX;
+				int slot= chunkSlots[chunk];
+				if(slot < 0) slot= buildChunk(chunk);
+				slotLastFrames[slot]= frame;
+				int count= slotTileCounts[slot];
+				if(count == 0) continue;
+				Vertices vertices= slotVertices[slot];
+				vertices.bind();
+				vertices.draw(GL10.GL_TRIANGLES, 0, count * 6);
+				vertices.unbind();
+				renderCalls++;
+			}
+		}
+	}
+
+	/**
+	 * Construit les vertices d'un bloc dans un emplacement de cache
+	 * @param chunk : indice du bloc
+	 * @return emplacement de cache utilisé
+	 */
+	private int buildChunk(int chunk){
+		int slot= findSlot();
+		if(slotChunks[slot] >= 0) chunkSlots[slotChunks[slot]]= -1;
+		slotChunks[slot]= chunk;
+		chunkSlots[chunk]= slot;
+		Vertices vertices= slotVertices[slot];
+		if(vertices == null){
+			//position en float et coordonnées de texture en short : 12 bytes par vertex
+			vertices= new Vertices(glGraphics, chunkSize * chunkSize * 4, 0, GL10.GL_FLOAT, Vertices.NONE, GL10.GL_SHORT, true);
+			vertices.setStatic(true);
+			vertices.shareIndices(quadIndices);
+			slotVertices[slot]= vertices;
+		}
+		//tuiles du bloc, les tuiles vides ne sont pas écrites
+		int startX= (chunk % chunksX) * chunkSize;
+		int startY= (chunk / chunksX) * chunkSize;
+		int endX= Math.min(width, startX + chunkSize);
+		int endY= Math.min(height, startY + chunkSize);
+		int count= 0;
+		vertices.beginWrite();
+		for(int y= startY; y < endY; y++){
+			float y1= y * tileSize;
+			float y2= y1 + tileSize;
+			int row= y * width;
+			for(int x= startX; x < endX; x++){
+				int tileId= tiles[row + x];
+				if(tileId == EMPTY) continue;
+				TextureRegion region= tileset[tileId];
+				float x1= x * tileSize;
+				float x2= x1 + tileSize;
+				vertices.putFloat(x1);
+				vertices.putFloat(y1);
+				vertices.putInt(region.packedU1V2);
+				vertices.putFloat(x2);
+				vertices.putFloat(y1);
+				vertices.putInt(region.packedU2V2);
+				vertices.putFloat(x2);
+				vertices.putFloat(y2);
+				vertices.putInt(region.packedU2V1);
+				vertices.putFloat(x1);
+				vertices.putFloat(y2);
+				vertices.putInt(region.packedU1V1);
+				count++;
+			}
+		}
+		vertices.endWrite();
+		slotTileCounts[slot]= count;
+		chunkBuilds++;
+		return slot;
+	}
+
+	/**
+	 * Trouve un emplacement de cache libre, ou à défaut celui du bloc affiché le moins récemment
+	 * @return emplacement de cache
+	 */
+	private int findSlot(){
+		int oldest= -1;
+		for(int slot= 0; slot < slotChunks.length; slot++){
+			if(slotChunks[slot] < 0) return slot;
+			if(slotLastFrames[slot] != frame && (oldest < 0 || slotLastFrames[slot] < slotLastFrames[oldest])) oldest= slot;
+		}
+		if(oldest < 0) throw new IllegalStateException("Too many visible chunks, increase maxCachedChunks");
+		return oldest;
+	}
+
+	/**
+	 * Remet à zéro les compteurs de rendu, à appeler en début de frame
+	 */
+	public void resetStats(){
+		renderCalls= 0;
+		chunkBuilds= 0;
+	}
+
+	/**
+	 * Libère les ressources GPU de la carte
+	 */
+	public void dispose(){
+		for(int slot= 0; slot < slotVertices.length; slot++){
+			if(slotVertices[slot] != null) slotVertices[slot].dispose();
+			slotChunks[slot]= -1;
+		}
+		quadIndices.dispose();
+		Arrays.fill(chunkSlots, -1);
+	}
+}
\ No newline at end of file
@@ -3,27 +3,74 @@ package yoan.game.framework.modules.graphics.gl;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 
 import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
 
 /**
  * Gestion Android des vertices pour OpenGL ES 1.0
+ * Peut utiliser des VBO OpenGL ES 1.1 si le device les supporte
+ * Chaque attribut d'un vertex occupe un nombre entier de mots de 32 bits :
+ * position en 2 float ou 2 short, couleur en 4 float ou 4 unsigned byte, coordonnées de texture en 2 float ou 2 short
  * @author yoan
  */
-public class Vertices {
+public class Vertices implements GLResource {
+	/** Nombre de VBO de vertices utilisés en rotation en mode VBO */
+	public static final int VBO_RING_SIZE= 3;
+	/** Type d'attribut indiquant que l'attribut est absent des vertices */
+	public static final int NONE= 0;
+	/** Valeur d'une coordonnée de texture de 1 en short, la matrice de texture ramène les valeurs dans [0-1] */
+	public static final float TEXCOORD_SCALE= Short.MAX_VALUE;
+	/** Indique si l'ordre des bytes natif est little endian, pour l'empaquetage des attributs */
+	static final boolean LITTLE_ENDIAN= ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
 	/** Accès Android à OpenGL ES 1.0 */
 	final GLGraphics glGraphics;
 	/** Indique si les vertices ont des couleurs */
 	final boolean hasColor;
 	/** Indique si les vertices ont une texture */
 	final boolean hasTexCoords;
+	/** Type GL des coordonnées des vertices : GL_FLOAT ou GL_SHORT */
+	final int positionType;
+	/** Type GL des couleurs : GL_FLOAT, GL_UNSIGNED_BYTE ou NONE */
+	final int colorType;
+	/** Type GL des coordonnées de texture : GL_FLOAT, GL_SHORT ou NONE */
+	final int texCoordType;
+	/** Position en byte de la couleur dans un vertex */
+	final int colorOffset;
+	/** Position en byte des coordonnées de texture dans un vertex */
+	final int texCoordOffset;
 	/** Taille d'un vertex en byte */
 	final int vertexSize;
+	/** Mémoire native contenant les vertices */
+	final ByteBuffer buffer;
 	/** Tableau contenant les coordonées des vertices et autres infos supplémentaires */
 	final FloatBuffer vertices;
+	/** Vue entière des vertices pour l'écriture d'attributs empaquetés */
+	final IntBuffer intVertices;
 	/** tableau des indices des vertices */
 	final ShortBuffer indices;
+	/** Vertices dont les indices sont utilisés à la place des indices propres, null si aucun */
+	Vertices indexSource;
+	/** Indique si les données sont stockées dans des VBO plutôt que passées à chaque rendu */
+	final boolean useVBO;
+	/** IDs GPU de l'anneau de VBO de vertices */
+	final int[] vertexBufferIds;
+	/** Nombre de VBO de vertices générés : 1 pour des données statiques, VBO_RING_SIZE sinon, 0 s'ils ne sont pas générés */
+	int vertexBufferCount;
+	/** ID GPU du VBO des indices */
+	int indexBufferId;
+	/** Indice du VBO de vertices courant dans l'anneau */
+	int currentVertexBuffer;
+	/** Indique si les vertices ont changé depuis le dernier upload vers le GPU */
+	boolean verticesDirty;
+	/** Indique si les indices ont changé depuis le dernier upload vers le GPU */
+	boolean indicesDirty;
+	/** Indique si les vertices changent rarement : un seul VBO stocké en GL_STATIC_DRAW au lieu de l'anneau */
+	boolean staticData;
+	/** Indique si les coordonnées de texture sont aussi liées à la seconde unité de texture (texture d'alpha séparée) */
+	boolean alphaTexCoordsBound;
 	
 	/**
 	 * Constructeur de vertices à partir des options
@@ -34,21 +81,64 @@ public class Vertices {
 	 * @param hasTexCoords : indique si une texture est gérée
 	 */
 	public Vertices(GLGraphics glGraphics, int maxVertices, int maxIndices, boolean hasColor, boolean hasTexCoords){
+		this(glGraphics, maxVertices, maxIndices, hasColor, hasTexCoords, false);
+	}
+
+	/**
+	 * Constructeur de vertices à partir des options
+	 * @param glGraphics : gestionnaire des graphismes openGL ES
+	 * @param maxVertices : nombre max de vertices stockés
+	 * @param maxIndices : nombre max d'indices stockés
+	 * @param hasColor : inidique si la couleur est gérée
+	 * @param hasTexCoords : indique si une texture est gérée
+	 * @param useVBO : indique si on veut utiliser des VBO (ignoré si OpenGL ES 1.1 n'est pas supporté)
+	 */
+	public Vertices(GLGraphics glGraphics, int maxVertices, int maxIndices, boolean hasColor, boolean hasTexCoords, boolean useVBO){
+		this(glGraphics, maxVertices, maxIndices, GL10.GL_FLOAT, hasColor ? GL10.GL_FLOAT : NONE, hasTexCoords ? GL10.GL_FLOAT : NONE, useVBO);
+	}
+
+	/**
+	 * Constructeur de vertices à partir du type de chacun des attributs
+	 * Les coordonnées de texture en short sont normalisées par TEXCOORD_SCALE via la matrice de texture
+	 * @param glGraphics : gestionnaire des graphismes openGL ES
+	 * @param maxVertices : nombre max de vertices stockés
+	 * @param maxIndices : nombre max d'indices stockés
+	 * @param positionType : type des coordonnées : GL_FLOAT ou GL_SHORT
+	 * @param colorType : type des couleurs : GL_FLOAT, GL_UNSIGNED_BYTE ou NONE
+	 * @param texCoordType : type des coordonnées de texture : GL_FLOAT, GL_SHORT ou NONE
+	 * @param useVBO : indique si on veut utiliser des VBO (ignoré si OpenGL ES 1.1 n'est pas supporté),
+	 * les vertices sont alors enregistrés dans le registre des ressources et dispose() doit être appelé pour les libérer
+	 */
+	public Vertices(GLGraphics glGraphics, int maxVertices, int maxIndices, int positionType, int colorType, int texCoordType, boolean useVBO){
+		if(positionType != GL10.GL_FLOAT && positionType != GL10.GL_SHORT) throw new IllegalArgumentException("Position type must be GL_FLOAT or GL_SHORT");
+		if(colorType != NONE && colorType != GL10.GL_FLOAT && colorType != GL10.GL_UNSIGNED_BYTE) throw new IllegalArgumentException("Color type must be GL_FLOAT, GL_UNSIGNED_BYTE or NONE");
+		if(texCoordType != NONE && texCoordType != GL10.GL_FLOAT && texCoordType != GL10.GL_SHORT) throw new IllegalArgumentException("Texture coordinates type must be GL_FLOAT, GL_SHORT or NONE");
 		this.glGraphics= glGraphics;
-		this.hasColor= hasColor;
-		this.hasTexCoords= hasTexCoords;
-		//calcul de la taille d'un vertex : (2 coord + 0 ou 4 couleur + 0 ou 2 coord de texture) * taille d'un float en byte
-		this.vertexSize= (2 + (hasColor ? 4 : 0) + (hasTexCoords ? 2 : 0)) * Float.SIZE / 8;
+		this.positionType= positionType;
+		this.colorType= colorType;
+		this.texCoordType= texCoordType;
+		this.hasColor= colorType != NONE;
+		this.hasTexCoords= texCoordType != NONE;
+		//sans OpenGL ES 1.1 on reste sur les tableaux côté client
+		this.useVBO= useVBO && glGraphics.isGL11();
+		this.vertexBufferIds= this.useVBO ? new int[VBO_RING_SIZE] : null;
+		//les tableaux côté client survivent à une perte du contexte, pas les VBO
+		if(this.useVBO) glGraphics.getResources().register(this);
+		//calcul de la position de chaque attribut : 2 coord + 0 ou 4 couleur + 0 ou 2 coord de texture
+		this.colorOffset= positionType == GL10.GL_FLOAT ? 2 * Float.SIZE / 8 : 2 * Short.SIZE / 8;
+		this.texCoordOffset= colorOffset + (colorType == GL10.GL_FLOAT ? 4 * Float.SIZE / 8 : colorType == GL10.GL_UNSIGNED_BYTE ? 4 : 0);
+		this.vertexSize= texCoordOffset + (texCoordType == GL10.GL_FLOAT ? 2 * Float.SIZE / 8 : texCoordType == GL10.GL_SHORT ? 2 * Short.SIZE / 8 : 0);
 		//allocation du tableau de vertices
-		ByteBuffer buffer= ByteBuffer.allocateDirect(maxVertices * vertexSize);
+		buffer= ByteBuffer.allocateDirect(maxVertices * vertexSize);
 		buffer.order(ByteOrder.nativeOrder());
 		vertices= buffer.asFloatBuffer();
+		intVertices= buffer.asIntBuffer();
 		
 		if(maxIndices > 0){
 			//allocation du tableau des indices
-			buffer= ByteBuffer.allocateDirect(maxIndices * Short.SIZE / 8);
-			buffer.order(ByteOrder.nativeOrder());
-			indices= buffer.asShortBuffer();
+			ByteBuffer indexBuffer= ByteBuffer.allocateDirect(maxIndices * Short.SIZE / 8);
+			indexBuffer.order(ByteOrder.nativeOrder());
+			indices= indexBuffer.asShortBuffer();
 		}else{
 			indices= null;
 		}
@@ -64,6 +154,110 @@ public class Vertices {
 		this.vertices.clear();
 		this.vertices.put(vertices, offset, length);
 		this.vertices.flip();
+		verticesDirty= true;
+	}
+
+	/**
+	 * Mise à jour des données des vertices à partir de mots de 32 bits
+	 * Permet d'envoyer des attributs empaquetés (cf. packColor, packTexCoords) et des float via Float.floatToRawIntBits
+	 * @param vertices : données des vertices
+	 * @param offset : indice de début des données à copier
+	 * @param length : nombre de int à copier
+	 */
+	public void setVertices(int[] vertices, int offset, int length){
+		intVertices.clear();
+		intVertices.put(vertices, offset, length);
+		//les deux vues partagent la même mémoire et des éléments de même taille
+		this.vertices.clear();
+		this.vertices.limit(length);
+		verticesDirty= true;
+	}
+
+	/**
+	 * Commence l'écriture directe des vertices dans la mémoire native, sans tableau intermédiaire
+	 * Les données précédentes sont remplacées, l'écriture se termine par endWrite
+	 */
+	public void beginWrite(){
+		intVertices.clear();
+	}
+
+	/**
+	 * Reprend l'écriture directe à la suite des vertices déjà écrits
+	 */
+	public void continueWrite(){
+		//la limite de la vue float est toujours à jour, y compris après setVertices(float[])
+		int length= vertices.limit();
+		intVertices.limit(intVertices.capacity());
+		intVertices.position(length);
+	}
+
+	/**
+	 * Donne le nombre de mots de 32 bits écrits depuis le début de l'écriture
+	 * @return position d'écriture
+	 */
+	public int getWritePosition(){
+		return intVertices.position();
+	}
+
+	/**
+	 * Indique si les vertices sont mis à jour rarement (décor, cache de sprites...)
+	 * En mode VBO ils sont alors stockés une seule fois en GL_STATIC_DRAW, dans un seul VBO si l'appel précède le premier binding
+	 * @param staticData : true si les vertices changent rarement
+	 */
+	public void setStatic(boolean staticData){
+		this.staticData= staticData;
+	}
+
+	/**
+	 * Ecrit un float à la suite des vertices en cours d'écriture
+	 * @param value : valeur à écrire
+	 */
+	public void putFloat(float value){
+		intVertices.put(Float.floatToRawIntBits(value));
+	}
+
+	/**
+	 * Ecrit un mot de 32 bits (attribut empaqueté) à la suite des vertices en cours d'écriture
+	 * @param value : valeur à écrire
+	 */
+	public void putInt(int value){
+		intVertices.put(value);
+	}
+
+	/**
+	 * Ecrit des mots de 32 bits à la suite des vertices en cours d'écriture
+	 * @param values : valeurs à écrire
+	 * @param offset : indice de début des données à copier
+	 * @param length : nombre de int à copier
+	 */
+	public void putInts(int[] values, int offset, int length){
+		intVertices.put(values, offset, length);
+	}
+
+	/**
+	 * Ecrit un vertex avec une position en float, une couleur et des coordonnées de texture empaquetées
+	 * @param x : abcisse du vertex
+	 * @param y : ordonnée du vertex
+	 * @param color : couleur empaquetée (cf. packColor)
+	 * @param texCoords : coordonnées de texture empaquetées (cf. packTexCoords)
+	 */
+	public void putVertex(float x, float y, int color, int texCoords){
+		IntBuffer buffer= intVertices;
+		buffer.put(Float.floatToRawIntBits(x));
+		buffer.put(Float.floatToRawIntBits(y));
+		buffer.put(color);
+		buffer.put(texCoords);
+	}
+
+	/**
+	 * Termine l'écriture directe des vertices, les données écrites seront utilisées au prochain binding
+	 */
+	public void endWrite(){
+		int length= intVertices.position();
+		intVertices.flip();
+		vertices.clear();
+		vertices.limit(length);
+		verticesDirty= true;
 	}
 
 	/**
@@ -76,33 +270,162 @@ public class Vertices {
 		this.indices.clear();
 		this.indices.put(indices, offset, length);
 		this.indices.flip();
+		indicesDirty= true;
+	}
+
+	/**
+	 * Utilise les indices d'autres vertices, pour que plusieurs vertices de même topologie (blocs de tuiles...)
+	 * partagent un seul tableau ou VBO d'indices
+	 * Les vertices doivent avoir été créés sans indices (maxIndices à 0)
+	 * @param source : vertices dont les indices sont partagés
+	 */
+	public void shareIndices(Vertices source){
+		if(indices != null) throw new IllegalStateException("Vertices already have their own indices");
+		if(source.indices == null) throw new IllegalArgumentException("Source vertices have no indices");
+		if(source.useVBO != useVBO) throw new IllegalArgumentException("Source vertices must use the same storage (VBO or client arrays)");
+		this.indexSource= source;
 	}
 
 	/**
 	 * Binding des données des vertices
 	 */
 	public void bind(){
+		if(useVBO){
+			bindVBO();
+			return;
+		}
 		GL10 gl= glGraphics.getGL();
 		//binding des coordonnées des vertices
 		gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
-		vertices.position(0);
-		gl.glVertexPointer(2, GL10.GL_FLOAT, vertexSize, vertices);
+		buffer.position(0);
+		gl.glVertexPointer(2, positionType, vertexSize, buffer);
 		//si on gère la couleur
 		if(hasColor){
 			//binding des données des couleurs
 			gl.glEnableClientState(GL10.GL_COLOR_ARRAY);
-			vertices.position(2);
-			gl.glColorPointer(4, GL10.GL_FLOAT, vertexSize, vertices);
+			buffer.position(colorOffset);
+			gl.glColorPointer(4, colorType, vertexSize, buffer);
 		}
 		//si on gère une texture 
 		if(hasTexCoords){
 			//binding des coordonnées de texture
 			gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
-			vertices.position(hasColor ? 6 : 2);
-			gl.glTexCoordPointer(2, GL10.GL_FLOAT, vertexSize, vertices);
+			buffer.position(texCoordOffset);
+			gl.glTexCoordPointer(2, texCoordType, vertexSize, buffer);
+			//la seconde unité de texture lit les mêmes coordonnées pour les textures d'alpha séparées
+			alphaTexCoordsBound= glGraphics.hasAlphaTextures();
+			if(alphaTexCoordsBound){
+				gl.glClientActiveTexture(GL10.GL_TEXTURE1);
+				gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+				gl.glTexCoordPointer(2, texCoordType, vertexSize, buffer);
+				gl.glClientActiveTexture(GL10.GL_TEXTURE0);
+			}
+			bindTexCoordScale(gl);
 		}
 	}
+
+	/**
+	 * Met en place la matrice de texture qui normalise les coordonnées de texture en short
+	 * @param gl : instance de GL10
+	 */
+	private void bindTexCoordScale(GL10 gl){
+		if(texCoordType != GL10.GL_SHORT) return;
+		gl.glMatrixMode(GL10.GL_TEXTURE);
+		gl.glLoadIdentity();
+		gl.glScalef(1 / TEXCOORD_SCALE, 1 / TEXCOORD_SCALE, 1);
+		//la matrice de texture est propre à chaque unité de texture
+		if(alphaTexCoordsBound){
+			gl.glActiveTexture(GL10.GL_TEXTURE1);
+			gl.glLoadIdentity();
+			gl.glScalef(1 / TEXCOORD_SCALE, 1 / TEXCOORD_SCALE, 1);
+			gl.glActiveTexture(GL10.GL_TEXTURE0);
+		}
+		//on revient sur GL_MODELVIEW comme après Camera2D.setViewportAndMatrices
+		gl.glMatrixMode(GL10.GL_MODELVIEW);
+	}
 	
+	/**
+	 * Binding des données des vertices stockées dans des VBO
+	 * Les données modifiées depuis le dernier binding sont envoyées au GPU
+	 */
+	private void bindVBO(){
+		GL11 gl= glGraphics.getGL11();
+		//génération des VBO au premier binding
+		if(vertexBufferCount == 0) generateBuffers(gl);
+		if(verticesDirty && staticData){
+			//données statiques : un seul VBO, remplacé entièrement
+			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, vertexBufferIds[currentVertexBuffer]);
+			vertices.position(0);
+			gl.glBufferData(GL11.GL_ARRAY_BUFFER, vertices.limit() * Float.SIZE / 8, vertices, GL11.GL_STATIC_DRAW);
+			verticesDirty= false;
+		}else if(verticesDirty){
+			//on passe au VBO suivant de l'anneau pour ne pas attendre que le GPU ait fini avec le précédent
+			currentVertexBuffer= (currentVertexBuffer + 1) % vertexBufferCount;
+			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, vertexBufferIds[currentVertexBuffer]);
+			//orphelinage de l'ancien contenu du VBO puis upload des nouvelles données
+			gl.glBufferData(GL11.GL_ARRAY_BUFFER, vertices.capacity() * Float.SIZE / 8, null, GL11.GL_STREAM_DRAW);
+			vertices.position(0);
+			gl.glBufferSubData(GL11.GL_ARRAY_BUFFER, 0, vertices.limit() * Float.SIZE / 8, vertices);
+			verticesDirty= false;
+		}else{
+			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, vertexBufferIds[currentVertexBuffer]);
+		}
+		Vertices indexOwner= indexSource != null ? indexSource : this;
+		if(indexOwner.indices != null) indexOwner.bindIndexBuffer(gl);
+		//binding des coordonnées des vertices par offset dans le VBO
+		gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
+		gl.glVertexPointer(2, positionType, vertexSize, 0);
+		if(hasColor){
+			gl.glEnableClientState(GL10.GL_COLOR_ARRAY);
+			gl.glColorPointer(4, colorType, vertexSize, colorOffset);
+		}
+		if(hasTexCoords){
+			gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+			gl.glTexCoordPointer(2, texCoordType, vertexSize, texCoordOffset);
+			alphaTexCoordsBound= glGraphics.hasAlphaTextures();
+			if(alphaTexCoordsBound){
+				gl.glClientActiveTexture(GL10.GL_TEXTURE1);
+				gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+				gl.glTexCoordPointer(2, texCoordType, vertexSize, texCoordOffset);
+				gl.glClientActiveTexture(GL10.GL_TEXTURE0);
+			}
+			bindTexCoordScale(gl);
+		}
+	}
+
+	/**
+	 * Binding du VBO des indices, généré et rempli au premier binding
+	 * Peut être appelé par d'autres vertices qui partagent ces indices
+	 * @param gl : instance de GL11
+	 */
+	private void bindIndexBuffer(GL11 gl){
+		if(indexBufferId == 0){
+			int[] bufferIds= new int[1];
+			gl.glGenBuffers(1, bufferIds, 0);
+			indexBufferId= bufferIds[0];
+			indicesDirty= true;
+		}
+		gl.glBindBuffer(GL11.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+		//les indices ne changent en général qu'une fois, ils sont stockés de manière statique
+		if(indicesDirty){
+			indices.position(0);
+			gl.glBufferData(GL11.GL_ELEMENT_ARRAY_BUFFER, indices.limit() * Short.SIZE / 8, indices, GL11.GL_STATIC_DRAW);
+			indicesDirty= false;
+		}
+	}
+
+	/**
+	 * Génère les IDs des VBO de vertices dans la mémoire GPU
+	 * Les données statiques n'utilisent qu'un seul VBO de vertices, l'anneau n'étant utile qu'aux données réécrites à chaque frame
+	 * @param gl : instance de GL11
+	 */
+	private void generateBuffers(GL11 gl){
+		vertexBufferCount= staticData ? 1 : VBO_RING_SIZE;
+		gl.glGenBuffers(vertexBufferCount, vertexBufferIds, 0);
+		//le contenu des nouveaux VBO est à envoyer
+		verticesDirty= true;
+	}
+
 	/**
 	 * Dessine une forme primitive à l'aide d'un sous ensemble des données du tableau de vertices
 	 * @param primitiveType : ID de la forme primitive à dessiner
@@ -111,11 +434,17 @@ public class Vertices {
 	 */
 	public void draw(int primitiveType, int offset, int numVertices){
 		GL10 gl= glGraphics.getGL();
+		ShortBuffer indices= indexSource != null ? indexSource.indices : this.indices;
 		//si indexation des vertices
 		if(indices != null){
 			//on utilise les indices pour dessiner
-			indices.position(offset);
-			gl.glDrawElements(primitiveType, numVertices, GL10.GL_UNSIGNED_SHORT, indices);
+			if(useVBO){
+				//l'offset est exprimé en byte dans le VBO des indices
+				((GL11) gl).glDrawElements(primitiveType, numVertices, GL10.GL_UNSIGNED_SHORT, offset * Short.SIZE / 8);
+			}else{
+				indices.position(offset);
+				gl.glDrawElements(primitiveType, numVertices, GL10.GL_UNSIGNED_SHORT, indices);
+			}
 		}else{
 			//sinon, on utilise directement les coordonnées
 			gl.glDrawArrays(primitiveType, offset, numVertices);
@@ -129,6 +458,125 @@ public class Vertices {
 		GL10 gl= glGraphics.getGL();
 		//unbinding si nécessaire
 		if(hasTexCoords) gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
-		if(hasColor) gl.glDisableClientState(GL10.GL_COLOR_ARRAY);
+		if(hasColor){
+			gl.glDisableClientState(GL10.GL_COLOR_ARRAY);
+			//la couleur courante est indéfinie après un rendu avec un tableau de couleurs, on la remet à blanc
+			gl.glColor4f(1, 1, 1, 1);
+		}
+		//on remet la matrice de texture à l'identité pour les autres vertices
+		if(texCoordType == GL10.GL_SHORT){
+			gl.glMatrixMode(GL10.GL_TEXTURE);
+			gl.glLoadIdentity();
+			if(alphaTexCoordsBound){
+				gl.glActiveTexture(GL10.GL_TEXTURE1);
+				gl.glLoadIdentity();
+				gl.glActiveTexture(GL10.GL_TEXTURE0);
+			}
+			gl.glMatrixMode(GL10.GL_MODELVIEW);
+		}
+		if(alphaTexCoordsBound){
+			gl.glClientActiveTexture(GL10.GL_TEXTURE1);
+			gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+			gl.glClientActiveTexture(GL10.GL_TEXTURE0);
+			alphaTexCoordsBound= false;
+		}
+		//on ne pointe plus sur les VBO pour ne pas gêner les tableaux côté client
+		if(useVBO){
+			GL11 gl11= (GL11) gl;
+			gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+			gl11.glBindBuffer(GL11.GL_ELEMENT_ARRAY_BUFFER, 0);
+		}
+	}
+
+	/**
+	 * Rien à préparer : les données des vertices sont conservées côté client
+	 */
+	public void prepareRebuild(){
+		//rien à faire
+	}
+
+	/**
+	 * Oublie les VBO du contexte perdu, ils sont régénérés et remplis au prochain binding
+	 */
+	public void rebuild(){
+		vertexBufferCount= 0;
+		indexBufferId= 0;
+		currentVertexBuffer= 0;
+	}
+
+	/**
+	 * Rien à libérer : aucune donnée n'est préparée
+	 */
+	public void discardRebuild(){
+		//rien à faire
+	}
+
+	/**
+	 * Efface les VBO de la mémoire GPU
+	 */
+	public void dispose(){
+		if(!useVBO) return;
+		glGraphics.getResources().unregister(this);
+		GL11 gl= glGraphics.getGL11();
+		if(vertexBufferCount != 0){
+			gl.glDeleteBuffers(vertexBufferCount, vertexBufferIds, 0);
+			vertexBufferCount= 0;
+		}
+		if(indexBufferId != 0){
+			int[] bufferIds= {indexBufferId};
+			gl.glDeleteBuffers(1, bufferIds, 0);
+			indexBufferId= 0;
+		}
+	}
+
+	/**
+	 * Empaquette une couleur RGBA en 4 unsigned byte dans un int, dans l'ordre attendu par GL_UNSIGNED_BYTE
+	 * Les composantes hors de [0-1] sont ramenées aux bornes
+	 * @param r : composante rouge [0-1]
+	 * @param g : composante verte [0-1]
+	 * @param b : composante bleue [0-1]
+	 * @param a : composante alpha [0-1]
+	 * @return la couleur empaquetée
+	 */
+	public static int packColor(float r, float g, float b, float a){
+		int red= toUnsignedByte(r);
+		int green= toUnsignedByte(g);
+		int blue= toUnsignedByte(b);
+		int alpha= toUnsignedByte(a);
+		//en mémoire les bytes doivent être dans l'ordre R, G, B, A
+		if(LITTLE_ENDIAN) return (alpha << 24) | (blue << 16) | (green << 8) | red;
+		return (red << 24) | (green << 16) | (blue << 8) | alpha;
+	}
+
+	/**
+	 * Convertit une composante de couleur [0-1] en unsigned byte, sans déborder sur les composantes voisines
+	 * @param component : composante de couleur
+	 * @return valeur [0-255]
+	 */
+	private static int toUnsignedByte(float component){
+		if(component <= 0) return 0;
+		if(component >= 1) return 255;
+		return (int) (component * 255);
+	}
+
+	/**
+	 * Empaquette deux short dans un int, dans l'ordre mémoire (first, second)
+	 * @param first : premier short (abcisse)
+	 * @param second : second short (ordonnée)
+	 * @return les deux short empaquetés
+	 */
+	public static int packShorts(int first, int second){
+		if(LITTLE_ENDIAN) return (second << 16) | (first & 0xFFFF);
+		return (first << 16) | (second & 0xFFFF);
+	}
+
+	/**
+	 * Empaquette des coordonnées de texture [0-1] en deux short normalisés par TEXCOORD_SCALE
+	 * @param u : abcisse dans la texture
+	 * @param v : ordonnée dans la texture
+	 * @return les coordonnées empaquetées
+	 */
+	public static int packTexCoords(float u, float v){
+		return packShorts(Math.round(u * TEXCOORD_SCALE), Math.round(v * TEXCOORD_SCALE));
 	}
 }
\ No newline at end of file
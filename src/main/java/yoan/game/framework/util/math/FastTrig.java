@@ -0,0 +1,85 @@
+package yoan.game.framework.util.math;
+
+/**
+ * Table de sinus/cosinus en float pour les calculs ne nécessitant pas une grande précision
+ * L'angle est arrondi à l'entrée de table la plus proche, la précision dépend donc de la résolution
+ * @author yoan
+ */
+public final class FastTrig {
+	/** Table partagée de 4096 entrées, précision d'environ 0.09° */
+	public static final FastTrig DEFAULT= new FastTrig(12);
+	/** Valeurs du sinus sur un tour complet */
+	final float[] sinTable;
+	/** Masque de bouclage sur la table */
+	final int mask;
+	/** Décalage d'un quart de tour dans la table pour le cosinus */
+	final int quarter;
+	/** Conversion d'un angle en degré en indice de la table */
+	final float degreesToIndex;
+	/** Conversion d'un angle en radian en indice de la table */
+	final float radiansToIndex;
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param bits : résolution de la table, elle contient 2^bits entrées par tour [2-20]
+	 */
+	public FastTrig(int bits){
+		if(bits < 2 || bits > 20) throw new IllegalArgumentException("Resolution must be between 2 and 20 bits");
+		int size= 1 << bits;
+		this.sinTable= new float[size];
+		this.mask= size - 1;
+		this.quarter= size / 4;
+		this.degreesToIndex= size / 360f;
+		this.radiansToIndex= (float) (size / (2 * Math.PI));
+		for(int i= 0; i < size; i++){
+			sinTable[i]= (float) Math.sin(i * 2 * Math.PI / size);
+		}
+	}
+
+	/**
+	 * Donne l'indice de la table correspondant à un angle
+	 * Le masque gère aussi les angles négatifs grâce au complément à deux
+	 * @param angle : angle déjà multiplié par le facteur de conversion
+	 * @return indice non masqué
+	 */
+	private static int toIndex(float angle){
+		//arrondi à l'entrée la plus proche
+		return angle >= 0 ? (int) (angle + 0.5f) : (int) (angle - 0.5f);
+	}
+
+	/**
+	 * Sinus d'un angle en degré
+	 * @param degrees : angle en degré
+	 * @return sinus approché
+	 */
+	public float sinDeg(float degrees){
+		return sinTable[toIndex(degrees * degreesToIndex) & mask];
+	}
+
+	/**
+	 * Cosinus d'un angle en degré
+	 * @param degrees : angle en degré
+	 * @return cosinus approché
+	 */
+	public float cosDeg(float degrees){
+		return sinTable[(toIndex(degrees * degreesToIndex) + quarter) & mask];
+	}
+
+	/**
+	 * Sinus d'un angle en radian
+	 * @param radians : angle en radian
+	 * @return sinus approché
+	 */
+	public float sin(float radians){
+		return sinTable[toIndex(radians * radiansToIndex) & mask];
+	}
+
+	/**
+	 * Cosinus d'un angle en radian
+	 * @param radians : angle en radian
+	 * @return cosinus approché
+	 */
+	public float cos(float radians){
+		return sinTable[(toIndex(radians * radiansToIndex) + quarter) & mask];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,198 @@
+package yoan.game.framework.util.text;
+
+/**
+ * Texte modifiable réutilisable, pour afficher des scores, chronomètres ou FPS sans créer d'objet à chaque frame
+ * Contrairement à StringBuilder, les nombres sont écrits directement dans le tableau de caractères sans passer par une String
+ * Seuls l'agrandissement du tableau, toString et subSequence allouent de la mémoire
+ * @author yoan
+ */
+public class TextBuilder implements CharSequence {
+	/** Nombre maximum de décimales des nombres à virgule */
+	public static final int MAX_DECIMALS= 9;
+	/** Puissances de 10 pour les décimales */
+	static final int[] POWERS_OF_TEN= {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000};
+	/** Caractères du texte */
+	char[] chars;
+	/** Nombre de caractères du texte */
+	int length;
+
+	/**
+	 * Constructeur par défaut, pour un texte de 16 caractères
+	 */
+	public TextBuilder(){
+		this(16);
+	}
+
+	/**
+	 * Constructeur avec paramètres
+	 * @param capacity : nombre de caractères avant le premier agrandissement
+	 */
+	public TextBuilder(int capacity){
+		if(capacity <= 0) throw new IllegalArgumentException("Capacity must be strictly positive");
+		this.chars= new char[capacity];
+	}
+
+	/**
+	 * Vide le texte, sans libérer le tableau de caractères
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder clear(){
+		length= 0;
+		return this;
+	}
+
+	/**
+	 * Agrandit le tableau de caractères si nécessaire
+	 * @param capacity : nombre de caractères à pouvoir contenir
+	 */
+	private void ensureCapacity(int capacity){
+		if(capacity <= chars.length) return;
+		char[] newChars= new char[Math.max(capacity, chars.length * 2)];
+		System.arraycopy(chars, 0, newChars, 0, length);
+		chars= newChars;
+	}
+
+	/**
+	 * Ajoute un caractère
+	 * @param c : caractère à ajouter
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder append(char c){
+		ensureCapacity(length + 1);
+		chars[length++]= c;
+		return this;
+	}
+
+	/**
+	 * Ajoute un texte
+	 * @param text : texte à ajouter, "null" si null
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder append(CharSequence text){
+		if(text == null) text= "null";
+		int textLength= text.length();
+		ensureCapacity(length + textLength);
+		for(int i= 0; i < textLength; i++){
+			chars[length++]= text.charAt(i);
+		}
+		return this;
+	}
+
+	/**
+	 * Ajoute un entier en base 10
+	 * @param value : entier à ajouter
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder append(int value){
+		return append((long) value);
+	}
+
+	/**
+	 * Ajoute un entier long en base 10
+	 * @param value : entier à ajouter
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder append(long value){
+		//calcul sur la valeur négative pour gérer Long.MIN_VALUE
+		long negative= value;
+		if(value < 0){
+			append('-');
+		}else{
+			negative= -value;
+		}
+		int digits= 1;
+		for(long rest= negative / 10; rest != 0; rest/= 10){
+			digits++;
+		}
+		ensureCapacity(length + digits);
+		//les chiffres sont écrits de droite à gauche
+		int position= length + digits;
+		do{
+			chars[--position]= (char) ('0' - negative % 10);
+			negative/= 10;
+		}while(negative != 0);
+		length+= digits;
+		return this;
+	}
+
+	/**
+	 * Ajoute un entier en base 10 complété à gauche par des zéros, pour les chronomètres (01:05)
+	 * @param value : entier positif à ajouter
+	 * @param minDigits : nombre minimum de chiffres
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder appendPadded(long value, int minDigits){
+		if(value < 0) throw new IllegalArgumentException("Zero padded value must be positive");
+		int digits= 1;
+		for(long rest= value / 10; rest != 0; rest/= 10){
+			digits++;
+		}
+		for(int i= digits; i < minDigits; i++){
+			append('0');
+		}
+		return append(value);
+	}
+
+	/**
+	 * Ajoute un nombre à virgule avec un nombre fixe de décimales, arrondi au plus proche
+	 * Les valeurs dont la partie entière dépasse la capacité d'un long après mise à l'échelle sont tronquées
+	 * @param value : nombre à ajouter
+	 * @param decimals : nombre de décimales [0-MAX_DECIMALS]
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder append(float value, int decimals){
+		return append((double) value, decimals);
+	}
+
+	/**
+	 * Ajoute un nombre à virgule avec un nombre fixe de décimales, arrondi au plus proche
+	 * Les valeurs dont la partie entière dépasse la capacité d'un long après mise à l'échelle sont tronquées
+	 * @param value : nombre à ajouter
+	 * @param decimals : nombre de décimales [0-MAX_DECIMALS]
+	 * @return cette instance pour chaîner les appels
+	 */
+	public TextBuilder append(double value, int decimals){
+		if(decimals < 0 || decimals > MAX_DECIMALS) throw new IllegalArgumentException("Decimals must be between 0 and " + MAX_DECIMALS);
+		if(Double.isNaN(value)) return append("NaN");
+		if(Double.isInfinite(value)) return append(value > 0 ? "Infinity" : "-Infinity");
+		int power= POWERS_OF_TEN[decimals];
+		long scaled= Math.round(Math.abs(value) * power);
+		//pas de signe pour une valeur arrondie à zéro
+		if(value < 0 && scaled != 0) append('-');
+		append(scaled / power);
+		if(decimals == 0) return this;
+		append('.');
+		long fraction= scaled % power;
+		for(int divisor= power / 10; divisor > 0; divisor/= 10){
+			append((char) ('0' + fraction / divisor % 10));
+		}
+		return this;
+	}
+
+	/**
+	 * Donne le tableau de caractères, valide jusqu'à la prochaine modification
+	 * @return tableau dont seuls les length() premiers caractères sont utilisés
+	 */
+	public char[] getChars(){
+		return chars;
+	}
+
+	public int length(){
+		return length;
+	}
+
+	public char charAt(int index){
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException("Index " + index + " out of text length " + length);
+		return chars[index];
+	}
+
+	public CharSequence subSequence(int start, int end){
+		if(start < 0 || end > length || start > end) throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + "[ for text length " + length);
+		return new String(chars, start, end - start);
+	}
+
+	@Override
+	public String toString(){
+		return new String(chars, 0, length);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package yoan.game.framework.modules.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests du FixedTimestep : consommation de l'accumulateur, limite de pas par frame et coefficient d'interpolation
+ * @author yoan
+ */
+public class FixedTimestepTest {
+	/** Une milliseconde en nanosecondes */
+	static final long MS= 1000000L;
+	/** Pas de 250 ms, exact en float comme en nanosecondes */
+	static final float STEP= 0.25f;
+	/** Tolérance sur le coefficient d'interpolation */
+	static final float EPSILON= 1e-6f;
+
+	/**
+	 * Le temps accumulé est consommé par pas entiers, le reste est gardé pour la frame suivante
+	 */
+	@Test
+	public void accumulatorSteps(){
+		FixedTimestep timestep= new FixedTimestep(STEP, 10);
+		assertEquals(250 * MS, timestep.stepNanos);
+		assertEquals(0, timestep.advance(100 * MS));
+		assertEquals(0.4f, timestep.getAlpha(), EPSILON);
+		assertEquals(1, timestep.advance(200 * MS));
+		assertEquals(0.2f, timestep.getAlpha(), EPSILON);
+		assertEquals(2, timestep.advance(500 * MS));
+		assertEquals(0.2f, timestep.getAlpha(), EPSILON);
+		//le reste complète exactement un pas
+		assertEquals(1, timestep.advance(200 * MS));
+		assertEquals(0, timestep.getAlpha(), EPSILON);
+		assertEquals(0, timestep.droppedSteps);
+	}
+
+	/**
+	 * Une frame trop longue est limitée à maxSteps, les pas en trop sont comptés et pas rattrapés ensuite
+	 */
+	@Test
+	public void maxStepsClampsSpiralOfDeath(){
+		FixedTimestep timestep= new FixedTimestep(STEP, 3);
+		//8 pas et 100 ms disponibles
+		assertEquals(3, timestep.advance(2100 * MS));
+		assertEquals(5, timestep.droppedSteps);
+		//seul le reste inférieur à un pas est gardé
+		assertEquals(0.4f, timestep.getAlpha(), EPSILON);
+		assertEquals(0, timestep.advance(0));
+		assertEquals(1, timestep.advance(150 * MS));
+		assertEquals(0, timestep.getAlpha(), EPSILON);
+		assertEquals(5, timestep.droppedSteps);
+	}
+
+	/**
+	 * Sur des frames de durée quelconque, le coefficient reste dans [0-1[ et aucun temps n'est perdu hors des pas abandonnés
+	 */
+	@Test
+	public void alphaStaysInRange(){
+		FixedTimestep timestep= new FixedTimestep(STEP, 4);
+		Random random= new Random(42);
+		long total= 0;
+		long steps= 0;
+		for(int frame= 0; frame < 1000; frame++){
+			long elapsed= random.nextInt(1200) * MS;
+			total+= elapsed;
+			int advanced= timestep.advance(elapsed);
+			assertTrue(advanced >= 0 && advanced <= timestep.getMaxSteps());
+			steps+= advanced;
+			float alpha= timestep.getAlpha();
+			assertTrue("alpha " + alpha, alpha >= 0 && alpha < 1);
+		}
+		//le temps abandonné est toujours un nombre entier de pas
+		long consumed= (steps + timestep.droppedSteps) * timestep.stepNanos + timestep.accumulator;
+		assertEquals(total, consumed);
+	}
+
+	/**
+	 * La remise à zéro vide l'accumulateur
+	 */
+	@Test
+	public void resetClearsAccumulator(){
+		FixedTimestep timestep= new FixedTimestep(STEP, 2);
+		timestep.advance(200 * MS);
+		timestep.reset();
+		assertEquals(0, timestep.getAlpha(), EPSILON);
+		assertEquals(0, timestep.advance(200 * MS));
+		assertEquals(STEP, timestep.getStep(), 0);
+	}
+
+	/**
+	 * Le pas doit être strictement positif
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void stepMustBePositive(){
+		new FixedTimestep(0, 1);
+	}
+
+	/**
+	 * Au moins un pas doit pouvoir être simulé par frame
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void maxStepsMustBePositive(){
+		new FixedTimestep(STEP, 0);
+	}
+}
\ No newline at end of file
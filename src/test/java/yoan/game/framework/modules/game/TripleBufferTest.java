@@ -0,0 +1,151 @@
+package yoan.game.framework.modules.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests du TripleBuffer : dernier buffer publié, réutilisation du buffer en lecture et séparation des buffers des deux threads
+ * @author yoan
+ */
+public class TripleBufferTest {
+	/** Nombre de publications du test à deux threads */
+	static final int PUBLICATIONS= 200000;
+	/** Nombre de valeurs par buffer, écrites entièrement à chaque publication */
+	static final int BUFFER_SIZE= 64;
+
+	/**
+	 * Séquence sur un seul thread : acquire donne le dernier buffer publié, ou garde le précédent si rien n'est publié
+	 */
+	@Test
+	public void acquireSeesNewestPublication(){
+		int[] first= new int[1], second= new int[1], third= new int[1];
+		TripleBuffer<int[]> buffer= new TripleBuffer<int[]>(first, second, third);
+		assertDistinct(buffer);
+		//rien n'est publié : le buffer en lecture est inchangé
+		int[] initial= buffer.getFront();
+		assertFalse(buffer.isFresh());
+		assertFalse(buffer.acquire());
+		assertSame(initial, buffer.getFront());
+
+		int[] written= buffer.getBack();
+		written[0]= 1;
+		buffer.publish();
+		assertDistinct(buffer);
+		assertTrue(buffer.isFresh());
+		assertTrue(buffer.acquire());
+		assertSame(written, buffer.getFront());
+		assertEquals(1, buffer.getFront()[0]);
+		assertDistinct(buffer);
+		//le même buffer est gardé tant que rien n'est publié
+		assertFalse(buffer.acquire());
+		assertSame(written, buffer.getFront());
+
+		//deux publications avant un acquire : seule la plus récente est vue
+		buffer.getBack()[0]= 2;
+		buffer.publish();
+		assertDistinct(buffer);
+		int[] newest= buffer.getBack();
+		newest[0]= 3;
+		buffer.publish();
+		assertDistinct(buffer);
+		assertTrue(buffer.acquire());
+		assertSame(newest, buffer.getFront());
+		assertEquals(3, buffer.getFront()[0]);
+		assertFalse(buffer.isFresh());
+		assertDistinct(buffer);
+	}
+
+	/**
+	 * Sur une longue alternance de publications et de récupérations, le producteur n'écrit jamais dans le buffer lu
+	 */
+	@Test
+	public void producerNeverWritesFrontBuffer(){
+		TripleBuffer<int[]> buffer= new TripleBuffer<int[]>(new int[1], new int[1], new int[1]);
+		for(int i= 0; i < 100; i++){
+			//1, 2 ou 3 publications entre deux récupérations, parfois aucune
+			for(int p= 0; p < i % 4; p++){
+				assertNotSame(buffer.getFront(), buffer.getBack());
+				buffer.getBack()[0]= i;
+				buffer.publish();
+				assertDistinct(buffer);
+			}
+			assertEquals(i % 4 != 0, buffer.acquire());
+			assertNotSame(buffer.getFront(), buffer.getBack());
+			assertDistinct(buffer);
+		}
+	}
+
+	/**
+	 * Les buffers doivent être trois instances distinctes
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void buffersMustBeDistinct(){
+		int[] shared= new int[1];
+		new TripleBuffer<int[]>(shared, new int[1], shared);
+	}
+
+	/**
+	 * Un producteur et un consommateur sur deux threads : le consommateur ne voit jamais un buffer à moitié écrit,
+	 * les numéros de publication récupérés sont strictement croissants et la dernière publication finit par être vue
+	 */
+	@Test(timeout= 30000)
+	public void twoThreadStress() throws InterruptedException{
+		final TripleBuffer<int[]> buffer= new TripleBuffer<int[]>(new int[BUFFER_SIZE], new int[BUFFER_SIZE], new int[BUFFER_SIZE]);
+		final AtomicReference<Throwable> failure= new AtomicReference<Throwable>();
+		Thread producer= new Thread("producer"){
+			@Override
+			public void run(){
+				for(int sequence= 1; sequence <= PUBLICATIONS; sequence++){
+					int[] values= buffer.getBack();
+					for(int i= 0; i < BUFFER_SIZE; i++){
+						values[i]= sequence;
+					}
+					buffer.publish();
+				}
+			}
+		};
+		Thread consumer= new Thread("consumer"){
+			@Override
+			public void run(){
+				try{
+					int last= 0;
+					while(last < PUBLICATIONS){
+						if(!buffer.acquire()) continue;
+						int[] values= buffer.getFront();
+						int sequence= values[0];
+						if(sequence <= last) throw new AssertionError("Publication " + sequence + " acquired after " + last);
+						for(int i= 1; i < BUFFER_SIZE; i++){
+							if(values[i] != sequence) throw new AssertionError("Torn buffer: " + values[i] + " in publication " + sequence);
+						}
+						last= sequence;
+					}
+				}catch(Throwable t){
+					failure.set(t);
+				}
+			}
+		};
+		consumer.start();
+		producer.start();
+		producer.join();
+		consumer.join();
+		assertNull(String.valueOf(failure.get()), failure.get());
+	}
+
+	/**
+	 * Vérifie que le producteur, le consommateur et le buffer du milieu utilisent trois emplacements différents
+	 * @param buffer : triple buffer
+	 */
+	private static void assertDistinct(TripleBuffer<?> buffer){
+		int middle= buffer.middle.get() & TripleBuffer.INDEX_MASK;
+		assertTrue("back " + buffer.back + ", middle " + middle + ", front " + buffer.front,
+				buffer.back != middle && middle != buffer.front && buffer.back != buffer.front);
+	}
+}
\ No newline at end of file
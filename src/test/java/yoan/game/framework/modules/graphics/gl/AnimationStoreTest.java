@@ -0,0 +1,122 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests de l'AnimationStore : la frame choisie doit être celle d'Animation.getKeyFrame pour le même temps écoulé
+ * @author yoan
+ */
+public class AnimationStoreTest {
+	/** Nombre de mises à jour comparées, plusieurs cycles de chaque animation */
+	static final int STEPS= 40;
+
+	/**
+	 * Animation en boucle, avant et arrière
+	 */
+	@Test
+	public void loopingMatchesAnimation(){
+		assertMatches(Animation.ANIMATION_LOOPING);
+		assertMatches(Animation.ANIMATION_LOOPING_REVERSED);
+	}
+
+	/**
+	 * Animation en boucle aller-retour, y compris avec une ou deux frames
+	 */
+	@Test
+	public void pingPongMatchesAnimation(){
+		assertMatches(Animation.ANIMATION_PINGPONG);
+	}
+
+	/**
+	 * Animation non bouclée : la dernière frame reste affichée une fois l'animation terminée
+	 */
+	@Test
+	public void nonLoopingMatchesAnimation(){
+		assertMatches(Animation.ANIMATION_NONLOOPING);
+		assertMatches(Animation.ANIMATION_NONLOOPING_REVERSED);
+	}
+
+	/**
+	 * Seules les animations non bouclées se terminent, à leur dernière frame
+	 */
+	@Test
+	public void finishesOnLastFrame(){
+		Animation animation= createAnimation(4, 0.25f);
+		AnimationStore store= new AnimationStore(2);
+		int id= store.addAnimation(animation);
+		int once= store.add(id, Animation.ANIMATION_NONLOOPING);
+		int loop= store.add(id, Animation.ANIMATION_LOOPING);
+		store.update(0.625f);
+		assertFalse(store.isFinished(once));
+		store.update(0.25f);
+		assertTrue(store.isFinished(once));
+		assertFalse(store.isFinished(loop));
+		//rejouer l'animation la remet au début
+		store.play(once, id, Animation.ANIMATION_NONLOOPING);
+		assertFalse(store.isFinished(once));
+	}
+
+	/**
+	 * Les accesseurs refusent une entité retirée
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void isFinishedRejectsRemovedEntity(){
+		AnimationStore store= new AnimationStore(1);
+		int entity= store.add(store.addAnimation(createAnimation(2, 0.25f)), Animation.ANIMATION_NONLOOPING);
+		store.remove(entity);
+		store.isFinished(entity);
+	}
+
+	/**
+	 * Les accesseurs refusent un identifiant qui n'a jamais été donné
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void getKeyFrameRejectsUnknownEntity(){
+		AnimationStore store= new AnimationStore(4);
+		store.add(store.addAnimation(createAnimation(2, 0.25f)), Animation.ANIMATION_LOOPING);
+		store.getKeyFrame(1);
+	}
+
+	/**
+	 * Compare la frame de chaque entité avec Animation.getKeyFrame à chaque mise à jour
+	 * Les temps sont pris au milieu des frames pour ne pas dépendre des arrondis aux changements de frame
+	 * @param mode : mode d'animation
+	 */
+	private static void assertMatches(int mode){
+		float[] frameDurations= {0.25f, 0.1f};
+		int[] frameCounts= {1, 2, 3, 5};
+		for(float frameDuration : frameDurations){
+			for(int frameCount : frameCounts){
+				Animation animation= createAnimation(frameCount, frameDuration);
+				AnimationStore store= new AnimationStore(1);
+				int entity= store.add(store.addAnimation(animation), mode);
+				float stateTime= frameDuration / 2;
+				store.update(stateTime);
+				for(int step= 0; step < STEPS; step++){
+					String message= "mode " + mode + ", " + frameCount + " frames of " + frameDuration + ", step " + step;
+					assertSame(message, animation.getKeyFrame(stateTime, mode), store.getKeyFrame(entity));
+					store.update(frameDuration);
+					stateTime+= frameDuration;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Crée une animation dont chaque frame est une région distincte
+	 * @param frameCount : nombre de frames
+	 * @param frameDuration : durée d'une frame
+	 * @return animation
+	 */
+	private static Animation createAnimation(int frameCount, float frameDuration){
+		TextureRegion[] keyFrames= new TextureRegion[frameCount];
+		for(int i= 0; i < frameCount; i++){
+			keyFrames[i]= new TextureRegion((float) i / frameCount, 0, (float) (i + 1) / frameCount, 1, null);
+		}
+		return new Animation(frameDuration, keyFrames);
+	}
+}
\ No newline at end of file
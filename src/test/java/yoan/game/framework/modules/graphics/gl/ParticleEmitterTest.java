@@ -0,0 +1,146 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * Tests du ParticleEmitter : générateur pseudo-aléatoire, retrait des particules mortes et lecture de la configuration
+ * @author yoan
+ */
+public class ParticleEmitterTest {
+	/** Nombre de tirages du générateur pseudo-aléatoire */
+	static final int DRAWS= 100000;
+	/** Nombre d'intervalles pour vérifier la répartition des tirages */
+	static final int BUCKETS= 10;
+
+	/**
+	 * Les tirages restent dans [min-max[, sont répartis uniformément et ne dépendent que de la graine
+	 */
+	@Test
+	public void xorshiftRandomStaysInRange(){
+		ParticleEmitter emitter= new ParticleEmitter(1, null);
+		emitter.seed= 12345;
+		int[] counts= new int[BUCKETS];
+		for(int i= 0; i < DRAWS; i++){
+			float value= emitter.random(-2, 3);
+			assertTrue("random " + value, value >= -2 && value < 3);
+			counts[(int) ((value + 2) / 5 * BUCKETS)]++;
+			//le xorshift ne doit jamais atteindre l'état nul, dont il ne sortirait plus
+			assertTrue(emitter.seed != 0);
+		}
+		for(int count : counts){
+			assertEquals(DRAWS / BUCKETS, count, DRAWS / BUCKETS / 10);
+		}
+		//même graine, même suite
+		ParticleEmitter first= new ParticleEmitter(1, null);
+		ParticleEmitter second= new ParticleEmitter(1, null);
+		first.seed= 987654321;
+		second.seed= 987654321;
+		for(int i= 0; i < 100; i++){
+			assertEquals(first.random(0, 1), second.random(0, 1), 0);
+		}
+		//bornes égales : valeur constante
+		assertEquals(4, first.random(4, 4), 0);
+	}
+
+	/**
+	 * Une particule morte est remplacée par la dernière, qui est mise à jour dans la même passe
+	 */
+	@Test
+	public void updateSwapRemovesDeadParticles(){
+		ParticleEmitter emitter= new ParticleEmitter(64, null);
+		emitter.seed= 42;
+		emitter.stop();
+		emitter.spreadX= 1000;
+		emitter.lifeMin= 0.5f;
+		emitter.lifeMax= 2;
+		emitter.burst(64);
+		assertEquals(64, emitter.getParticleCount());
+		//sans vitesse ni gravité, l'abcisse identifie chaque particule
+		Map<Float, Float> expectedAges= new HashMap<Float, Float>();
+		float deltaTime= 1;
+		for(int i= 0; i < emitter.getParticleCount(); i++){
+			float age= deltaTime * emitter.inverseLifes[i];
+			if(age < 1) expectedAges.put(emitter.xs[i], age);
+		}
+		assertTrue("some particles die, some survive", expectedAges.size() > 0 && expectedAges.size() < 64);
+		emitter.update(deltaTime);
+		assertEquals(expectedAges.size(), emitter.getParticleCount());
+		for(int i= 0; i < emitter.getParticleCount(); i++){
+			Float expected= expectedAges.remove(emitter.xs[i]);
+			assertTrue("unexpected particle at " + emitter.xs[i], expected != null);
+			//chaque survivante, déplacée ou non, a vieilli exactement une fois
+			assertEquals(expected, emitter.ages[i], 0);
+		}
+		assertTrue(expectedAges.isEmpty());
+		//toutes finissent par mourir
+		emitter.update(2);
+		assertEquals(0, emitter.getParticleCount());
+		assertTrue(emitter.isComplete());
+	}
+
+	/**
+	 * Les clés présentes sont lues, les clés absentes gardent leur valeur par défaut
+	 */
+	@Test
+	public void readsProperties(){
+		Properties properties= new Properties();
+		properties.setProperty("maxParticles", " 32 ");
+		properties.setProperty("emissionRate", "12.5");
+		properties.setProperty("lifeMin", "0.25");
+		properties.setProperty("lifeMax", "1.5");
+		properties.setProperty("gravityY", "-9.8");
+		properties.setProperty("colorStart", "1, 0.5, 0.25, 1");
+		properties.setProperty("colorEnd", "0,0,0,0");
+		ParticleEmitter emitter= new ParticleEmitter(properties, null);
+		assertEquals(32, emitter.getMaxParticles());
+		assertEquals(12.5f, emitter.emissionRate, 0);
+		assertEquals(0.25f, emitter.lifeMin, 0);
+		assertEquals(1.5f, emitter.lifeMax, 0);
+		assertEquals(-9.8f, emitter.gravityY, 0);
+		assertArrayEquals(new float[]{1, 0.5f, 0.25f, 1}, emitter.colorStart, 0);
+		assertArrayEquals(new float[]{0, 0, 0, 0}, emitter.colorEnd, 0);
+		//valeurs par défaut
+		assertEquals(360, emitter.angleMax, 0);
+		assertEquals(1, emitter.sizeMin, 0);
+		assertEquals(0, emitter.gravityX, 0);
+		assertEquals(100, new ParticleEmitter(new Properties(), null).getMaxParticles());
+	}
+
+	/**
+	 * Une couleur doit avoir 4 composantes
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void rejectsIncompleteColor(){
+		Properties properties= new Properties();
+		properties.setProperty("colorEnd", "1,1,1");
+		new ParticleEmitter(properties, null);
+	}
+
+	/**
+	 * Une durée de vie nulle donnerait une particule d'inverse de durée de vie infini
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void rejectsZeroLife(){
+		Properties properties= new Properties();
+		properties.setProperty("lifeMin", "0");
+		new ParticleEmitter(properties, null);
+	}
+
+	/**
+	 * Une durée de vie négative est refusée
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void rejectsNegativeLife(){
+		Properties properties= new Properties();
+		properties.setProperty("lifeMax", "-1");
+		new ParticleEmitter(properties, null);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package yoan.game.framework.modules.graphics.gl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests du placement des images par le TexturePacker
+ * @author yoan
+ */
+public class TexturePackerTest {
+
+	/**
+	 * Les images sont posées au plus bas de la ligne d'horizon, puis le plus à gauche
+	 */
+	@Test
+	public void skylinePlacesLowestThenLeftmost(){
+		int[] widths= {48, 16, 16};
+		int[] heights= {32, 16, 16};
+		int[] pages= new int[3];
+		int[] xs= new int[3];
+		int[] ys= new int[3];
+		TexturePacker packer= new TexturePacker(64, 0);
+		assertEquals(1, packer.pack(widths, heights, pages, xs, ys));
+		//la plus haute d'abord, dans le coin
+		assertPosition(0, 0, xs, ys, 0);
+		//la colonne libre à droite est plus basse que le dessus de la première image
+		assertPosition(48, 0, xs, ys, 1);
+		assertPosition(48, 16, xs, ys, 2);
+		assertEquals(64, packer.getPageWidth(0));
+		assertEquals(32, packer.getPageHeight(0));
+	}
+
+	/**
+	 * Les images de même hauteur remplissent une rangée avant de passer à la suivante
+	 */
+	@Test
+	public void skylineFillsRows(){
+		int[] widths= {32, 32, 64, 16};
+		int[] heights= {32, 32, 16, 16};
+		int[] pages= new int[4];
+		int[] xs= new int[4];
+		int[] ys= new int[4];
+		TexturePacker packer= new TexturePacker(64, 0);
+		assertEquals(1, packer.pack(widths, heights, pages, xs, ys));
+		assertPosition(0, 0, xs, ys, 0);
+		assertPosition(32, 0, xs, ys, 1);
+		assertPosition(0, 32, xs, ys, 2);
+		assertPosition(0, 48, xs, ys, 3);
+		assertEquals(64, packer.getPageWidth(0));
+		assertEquals(64, packer.getPageHeight(0));
+		assertNoOverlap(widths, heights, pages, xs, ys, 0);
+	}
+
+	/**
+	 * La marge sépare les images entre elles et du bord de la page, pour pouvoir y recopier leurs bords
+	 */
+	@Test
+	public void paddingLeavesRoomForBleed(){
+		int padding= 2;
+		int[] widths= {10, 10, 20, 7, 5};
+		int[] heights= {10, 10, 4, 12, 5};
+		int count= widths.length;
+		int[] pages= new int[count];
+		int[] xs= new int[count];
+		int[] ys= new int[count];
+		TexturePacker packer= new TexturePacker(32, padding);
+		int numPages= packer.pack(widths, heights, pages, xs, ys);
+		for(int i= 0; i < count; i++){
+			//la marge est exclue des positions renvoyées
+			assertTrue(xs[i] >= padding && ys[i] >= padding);
+			assertTrue(xs[i] + widths[i] + padding <= packer.getPageWidth(pages[i]));
+			assertTrue(ys[i] + heights[i] + padding <= packer.getPageHeight(pages[i]));
+		}
+		assertNoOverlap(widths, heights, pages, xs, ys, padding);
+		assertTrue(numPages >= 1);
+		//une seule image : la page est arrondie à la puissance de 2 qui contient l'image et ses marges
+		int[] single= new int[1];
+		assertEquals(1, packer.pack(new int[]{10}, new int[]{10}, new int[1], single, new int[1]));
+		assertEquals(padding, single[0]);
+		assertEquals(16, packer.getPageWidth(0));
+		assertEquals(16, packer.getPageHeight(0));
+	}
+
+	/**
+	 * Les images qui ne rentrent plus dans une page sont placées dans une nouvelle page
+	 */
+	@Test
+	public void overflowStartsNewPage(){
+		int count= 5;
+		int[] widths= new int[count];
+		int[] heights= new int[count];
+		for(int i= 0; i < count; i++){
+			widths[i]= 16;
+			heights[i]= 16;
+		}
+		int[] pages= new int[count];
+		int[] xs= new int[count];
+		int[] ys= new int[count];
+		TexturePacker packer= new TexturePacker(32, 0);
+		assertEquals(2, packer.pack(widths, heights, pages, xs, ys));
+		for(int i= 0; i < 4; i++){
+			assertEquals(0, pages[i]);
+		}
+		assertEquals(1, pages[4]);
+		assertPosition(0, 0, xs, ys, 4);
+		assertEquals(32, packer.getPageWidth(0));
+		assertEquals(32, packer.getPageHeight(0));
+		//la dernière page est réduite à ce qu'elle contient
+		assertEquals(16, packer.getPageWidth(1));
+		assertEquals(16, packer.getPageHeight(1));
+		assertNoOverlap(widths, heights, pages, xs, ys, 0);
+	}
+
+	/**
+	 * Une image plus grande qu'une page, marge comprise, est refusée
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void imageBiggerThanPageIsRejected(){
+		new TexturePacker(32, 1).pack(new int[]{31}, new int[]{8}, new int[1], new int[1], new int[1]);
+	}
+
+	/**
+	 * La taille des pages doit être une puissance de 2
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void pageSizeMustBePowerOfTwo(){
+		new TexturePacker(100, 0);
+	}
+
+	/**
+	 * Vérifie la position d'une image
+	 * @param x : abcisse attendue
+	 * @param y : ordonnée attendue
+	 * @param xs : abcisses des images
+	 * @param ys : ordonnées des images
+	 * @param image : indice de l'image
+	 */
+	private static void assertPosition(int x, int y, int[] xs, int[] ys, int image){
+		assertEquals("x of image " + image, x, xs[image]);
+		assertEquals("y of image " + image, y, ys[image]);
+	}
+
+	/**
+	 * Vérifie que les images d'une même page, agrandies de leur marge, ne se chevauchent pas
+	 * @param widths : largeur des images
+	 * @param heights : hauteur des images
+	 * @param pages : page des images
+	 * @param xs : abcisses des images
+	 * @param ys : ordonnées des images
+	 * @param padding : marge autour de chaque image
+	 */
+	private static void assertNoOverlap(int[] widths, int[] heights, int[] pages, int[] xs, int[] ys, int padding){
+		for(int i= 0; i < widths.length; i++){
+			for(int j= i + 1; j < widths.length; j++){
+				if(pages[i] != pages[j]) continue;
+				boolean overlap= xs[i] - padding < xs[j] + widths[j] + padding && xs[j] - padding < xs[i] + widths[i] + padding
+						&& ys[i] - padding < ys[j] + heights[j] + padding && ys[j] - padding < ys[i] + heights[i] + padding;
+				assertFalse("Images " + i + " and " + j + " overlap", overlap);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package yoan.game.framework.util.math;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests de la table FastTrig : l'erreur est bornée par la résolution de la table, quel que soit le tour
+ * @author yoan
+ */
+public class FastTrigTest {
+	/** Angle minimum testé en degré, plusieurs tours négatifs */
+	static final float MIN_DEGREES= -1080;
+	/** Angle maximum testé en degré, plusieurs tours positifs */
+	static final float MAX_DEGREES= 1080;
+	/** Pas entre deux angles testés, non multiple d'une entrée de table */
+	static final float STEP_DEGREES= 0.37f;
+	/** Marge ajoutée à la borne théorique pour les arrondis en float */
+	static final double EPSILON= 1e-5;
+
+	/**
+	 * La table par défaut reste sous la demi-entrée de table en degré, angles négatifs et supérieurs à 360 compris
+	 */
+	@Test
+	public void defaultDegreesWithinResolution(){
+		assertDegreesWithin(FastTrig.DEFAULT, 12);
+	}
+
+	/**
+	 * Même borne pour une table grossière, où l'erreur est nettement visible
+	 */
+	@Test
+	public void coarseDegreesWithinResolution(){
+		assertDegreesWithin(new FastTrig(6), 6);
+	}
+
+	/**
+	 * La conversion en radian est soumise à la même borne
+	 */
+	@Test
+	public void radiansWithinResolution(){
+		FastTrig trig= FastTrig.DEFAULT;
+		double bound= maxError(12);
+		for(float degrees= MIN_DEGREES; degrees <= MAX_DEGREES; degrees+= STEP_DEGREES){
+			float radians= (float) Math.toRadians(degrees);
+			assertEquals("sin(" + radians + ")", Math.sin(radians), trig.sin(radians), bound);
+			assertEquals("cos(" + radians + ")", Math.cos(radians), trig.cos(radians), bound);
+		}
+	}
+
+	/**
+	 * Les angles droits tombent sur des entrées de table, dans un sens comme dans l'autre
+	 */
+	@Test
+	public void rightAnglesAreExact(){
+		FastTrig trig= FastTrig.DEFAULT;
+		for(int turn= -2; turn <= 2; turn++){
+			float base= turn * 360;
+			assertEquals(0, trig.sinDeg(base), EPSILON);
+			assertEquals(1, trig.cosDeg(base), EPSILON);
+			assertEquals(1, trig.sinDeg(base + 90), EPSILON);
+			assertEquals(0, trig.cosDeg(base + 90), EPSILON);
+			assertEquals(0, trig.sinDeg(base + 180), EPSILON);
+			assertEquals(-1, trig.cosDeg(base + 180), EPSILON);
+			assertEquals(-1, trig.sinDeg(base - 90), EPSILON);
+			assertEquals(0, trig.cosDeg(base - 90), EPSILON);
+		}
+	}
+
+	/**
+	 * La résolution doit rester dans les bornes documentées
+	 */
+	@Test(expected= IllegalArgumentException.class)
+	public void resolutionIsBounded(){
+		new FastTrig(1);
+	}
+
+	/**
+	 * Compare sinDeg et cosDeg à Math.sin et Math.cos sur plusieurs tours
+	 * @param trig : table testée
+	 * @param bits : résolution de la table
+	 */
+	private static void assertDegreesWithin(FastTrig trig, int bits){
+		double bound= maxError(bits);
+		for(float degrees= MIN_DEGREES; degrees <= MAX_DEGREES; degrees+= STEP_DEGREES){
+			double radians= Math.toRadians(degrees);
+			assertEquals("sinDeg(" + degrees + ")", Math.sin(radians), trig.sinDeg(degrees), bound);
+			assertEquals("cosDeg(" + degrees + ")", Math.cos(radians), trig.cosDeg(degrees), bound);
+		}
+	}
+
+	/**
+	 * Calcule l'erreur maximum d'une table : l'angle est arrondi à une demi-entrée près et la pente du sinus est au plus 1
+	 * @param bits : résolution de la table
+	 * @return erreur maximum tolérée
+	 */
+	private static double maxError(int bits){
+		return Math.PI / (1 << bits) + EPSILON;
+	}
+}
\ No newline at end of file
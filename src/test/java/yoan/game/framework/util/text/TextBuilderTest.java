@@ -0,0 +1,98 @@
+package yoan.game.framework.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+/**
+ * Tests du TextBuilder : écriture des nombres et absence d'allocation lors de la réutilisation
+ * @author yoan
+ */
+public class TextBuilderTest {
+	/** Nombre d'itérations de la boucle mesurée */
+	static final int ITERATIONS= 10000;
+	/** Nombre de passes de préchauffage */
+	static final int WARMUP_ROUNDS= 5;
+	/** Nombre de mesures de la boucle */
+	static final int MEASURES= 5;
+
+	/**
+	 * Les entiers, entiers longs et nombres à virgule sont écrits comme par String.valueOf
+	 */
+	@Test
+	public void appendNumbers(){
+		TextBuilder text= new TextBuilder(4);
+		text.append("score ").append(1234).append(' ').append(-56789L);
+		assertEquals("score 1234 -56789", text.toString());
+		text.clear().append(Integer.MIN_VALUE).append('|').append(Long.MIN_VALUE).append('|').append(0);
+		assertEquals(Integer.MIN_VALUE + "|" + Long.MIN_VALUE + "|0", text.toString());
+		text.clear().append(3.14159f, 2).append(' ').append(-0.5f, 1).append(' ').append(-0.04f, 1).append(' ').append(2.5f, 0);
+		assertEquals("3.14 -0.5 0.0 3", text.toString());
+		text.clear().append(1.005, 3).append(' ').append(0.25, 4);
+		assertEquals("1.005 0.2500", text.toString());
+		text.clear().appendPadded(1, 2).append(':').appendPadded(5, 2).append(':').appendPadded(123, 2);
+		assertEquals("01:05:123", text.toString());
+	}
+
+	/**
+	 * Réutilisé sans dépasser sa capacité, le builder n'alloue aucune mémoire
+	 */
+	@Test
+	public void reuseDoesNotAllocate(){
+		java.lang.management.ThreadMXBean bean= ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads= (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long threadId= Thread.currentThread().getId();
+		TextBuilder text= new TextBuilder(64);
+		//préchauffage : compilation des méthodes et des appels de mesure
+		int expected= checksum(ITERATIONS);
+		for(int i= 0; i < WARMUP_ROUNDS; i++){
+			assertEquals(expected, fill(text, ITERATIONS));
+		}
+		//la meilleure de plusieurs mesures écarte les allocations ponctuelles de la JVM (compilation, désoptimisation)
+		long allocated= Long.MAX_VALUE;
+		for(int i= 0; i < MEASURES; i++){
+			long overhead= threads.getThreadAllocatedBytes(threadId);
+			overhead= threads.getThreadAllocatedBytes(threadId) - overhead;
+			long before= threads.getThreadAllocatedBytes(threadId);
+			int checksum= fill(text, ITERATIONS);
+			allocated= Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before - overhead);
+			assertEquals(expected, checksum);
+		}
+		assertEquals("FPS 9999 frame 19998 time 9999.50", text.toString());
+		assertEquals("Bytes allocated while reusing the builder", 0, Math.max(0, allocated));
+	}
+
+	/**
+	 * Réécrit le texte à chaque itération comme pour un affichage par frame
+	 * @param text : builder réutilisé
+	 * @param iterations : nombre d'itérations
+	 * @return somme des longueurs écrites, pour que la boucle ne soit pas éliminée
+	 */
+	private static int fill(TextBuilder text, int iterations){
+		int checksum= 0;
+		for(int i= 0; i < iterations; i++){
+			text.clear().append("FPS ").append(i).append(" frame ").append(2L * i).append(" time ").append(i + 0.5f, 2);
+			checksum+= text.length();
+		}
+		return checksum;
+	}
+
+	/**
+	 * Calcule la somme des longueurs écrites par fill sans passer par le builder
+	 * @param iterations : nombre d'itérations
+	 * @return somme des longueurs
+	 */
+	private static int checksum(int iterations){
+		int checksum= 0;
+		for(int i= 0; i < iterations; i++){
+			checksum+= ("FPS " + i + " frame " + (2L * i) + " time " + i + ".50").length();
+		}
+		return checksum;
+	}
+}
\ No newline at end of file